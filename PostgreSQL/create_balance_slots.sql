@@ -0,0 +1,16 @@
+-- Adds hot-account balance slots to an existing bank_db.
+-- Accounts start with hot_slots = 0; enable the mode per account through
+-- POST /admin/accounts/{id}/hot-slots?slots=N.
+
+\c bank_db;
+
+ALTER TABLE accounts ADD COLUMN IF NOT EXISTS hot_slots INT NOT NULL DEFAULT 0;
+
+CREATE TABLE IF NOT EXISTS account_balance_slots (
+    id SERIAL PRIMARY KEY,
+    account_id BIGINT NOT NULL REFERENCES accounts(id) ON DELETE CASCADE,
+    slot INT NOT NULL,
+    balance NUMERIC(19,2) NOT NULL DEFAULT 0.00,
+    CONSTRAINT uk_account_balance_slots_account_slot UNIQUE (account_id, slot)
+);
+
@@ -0,0 +1,38 @@
+-- Adds the bigint counterparty columns used by bank.ledger.counterparty-storage=reference
+-- to an existing bank_db and fills them from the anonymized strings.
+-- Run before switching the mode, while the application is stopped or still in token mode.
+
+\c bank_db;
+
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS source_counterparty_id BIGINT;
+ALTER TABLE transactions ADD COLUMN IF NOT EXISTS target_counterparty_id BIGINT;
+
+UPDATE transactions t SET source_counterparty_id = m.id
+FROM anonymization_mappings m
+WHERE t.source_account_number = m.anonymized_value AND t.source_counterparty_id IS NULL;
+
+UPDATE transactions t SET target_counterparty_id = m.id
+FROM anonymization_mappings m
+WHERE t.target_account_number = m.anonymized_value AND t.target_counterparty_id IS NULL;
+
+ALTER TABLE transactions
+    ADD CONSTRAINT fk_transactions_source_counterparty FOREIGN KEY (source_counterparty_id) REFERENCES anonymization_mappings(id),
+    ADD CONSTRAINT fk_transactions_target_counterparty FOREIGN KEY (target_counterparty_id) REFERENCES anonymization_mappings(id);
+
+CREATE INDEX IF NOT EXISTS idx_transactions_source_cp_timestamp_id ON transactions(source_counterparty_id, timestamp, id);
+CREATE INDEX IF NOT EXISTS idx_transactions_target_cp_timestamp_id ON transactions(target_counterparty_id, timestamp, id);
+
+-- Once every instance runs in reference mode the strings are no longer read. Dropping
+-- them, and their indexes, is what reclaims the space:
+--
+-- UPDATE transactions SET source_account_number = NULL, target_account_number = NULL;
+-- DROP INDEX IF EXISTS idx_transactions_source_timestamp_id;
+-- DROP INDEX IF EXISTS idx_transactions_target_timestamp_id;
+-- VACUUM FULL transactions;
+--
+-- To go back to token mode, restore the strings first:
+--
+-- UPDATE transactions t SET source_account_number = m.anonymized_value
+-- FROM anonymization_mappings m WHERE t.source_counterparty_id = m.id AND t.source_account_number IS NULL;
+-- UPDATE transactions t SET target_account_number = m.anonymized_value
+-- FROM anonymization_mappings m WHERE t.target_counterparty_id = m.id AND t.target_account_number IS NULL;
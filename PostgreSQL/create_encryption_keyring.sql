@@ -0,0 +1,32 @@
+-- Adds the tables used by envelope encryption (bank.encryption.keks) and the
+-- re-encryption job to an existing bank_db. Run before configuring key-encryption keys;
+-- the first instance to start with them creates the first data key.
+--
+-- Rotation afterwards:
+--   POST /admin/encryption/keys/rotate   new data key for new values
+--   POST /admin/encryption/reencrypt     rewrites existing values, throttled, resumable
+--   GET  /admin/metrics/encryption       progress per table
+-- To retire a key-encryption key, make another one active, POST
+-- /admin/encryption/keys/rewrap, then remove the old one from bank.encryption.keks.
+
+\c bank_db;
+
+CREATE TABLE IF NOT EXISTS encryption_keys (
+    id SERIAL PRIMARY KEY,
+    kek_id VARCHAR(64) NOT NULL,
+    wrapped_key TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+CREATE TABLE IF NOT EXISTS reencryption_progress (
+    table_name VARCHAR(64) PRIMARY KEY,
+    data_key_id INT NOT NULL,
+    last_id BIGINT NOT NULL,
+    completed BOOLEAN NOT NULL DEFAULT false,
+    updated_at TIMESTAMP NOT NULL
+);
+
+-- Data keys older than the active one can be deleted once every table in
+-- reencryption_progress is completed for it and no value still names them:
+--
+-- DELETE FROM encryption_keys WHERE id < (SELECT max(id) FROM encryption_keys);
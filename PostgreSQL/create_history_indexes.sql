@@ -0,0 +1,9 @@
+-- Composite indexes backing the keyset-paginated transaction history.
+-- CONCURRENTLY avoids blocking ledger writes; run outside a transaction block.
+
+\c bank_db;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_source_timestamp_id
+    ON transactions(source_account_number, timestamp, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_target_timestamp_id
+    ON transactions(target_account_number, timestamp, id);
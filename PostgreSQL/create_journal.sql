@@ -0,0 +1,40 @@
+-- Adds the double-entry journal and balance snapshots to an existing bank_db.
+-- Each account gets an OPENING movement for its current balance so that the
+-- journal and the cached accounts.balance agree from the start.
+-- Run once before deploying; stop writes to accounts while it runs.
+
+\c bank_db;
+
+CREATE SEQUENCE IF NOT EXISTS journal_postings_seq INCREMENT BY 50;
+
+CREATE TABLE journal_postings (
+    id BIGINT PRIMARY KEY,
+    movement_id VARCHAR(36) NOT NULL,
+    account_id BIGINT REFERENCES accounts(id) ON DELETE SET NULL,
+    ledger VARCHAR(32) NOT NULL,
+    entry_type VARCHAR(32) NOT NULL,
+    amount NUMERIC(19,2) NOT NULL,
+    posted_at TIMESTAMP NOT NULL
+);
+
+CREATE TABLE balance_snapshots (
+    id SERIAL PRIMARY KEY,
+    account_id BIGINT NOT NULL REFERENCES accounts(id) ON DELETE CASCADE,
+    balance NUMERIC(19,2) NOT NULL,
+    last_posting_id BIGINT NOT NULL,
+    taken_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX idx_journal_postings_account_id ON journal_postings(account_id, id);
+CREATE INDEX idx_journal_postings_movement ON journal_postings(movement_id);
+CREATE INDEX idx_balance_snapshots_account ON balance_snapshots(account_id, last_posting_id);
+
+INSERT INTO journal_postings (id, movement_id, account_id, ledger, entry_type, amount, posted_at)
+SELECT nextval('journal_postings_seq'), m.movement_id, m.account_id, m.ledger, 'OPENING', m.amount, now()
+FROM (
+    SELECT md5('opening-' || a.id)::uuid::text AS movement_id, a.id AS account_id, 'CUSTOMER' AS ledger, a.balance AS amount
+    FROM accounts a WHERE a.balance <> 0
+    UNION ALL
+    SELECT md5('opening-' || a.id)::uuid::text, NULL, 'EXTERNAL', -a.balance
+    FROM accounts a WHERE a.balance <> 0
+) m;
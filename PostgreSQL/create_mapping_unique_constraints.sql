@@ -0,0 +1,42 @@
+-- Enforces one anonymization mapping per original value on databases created before
+-- init_db.sql declared the unique constraints. Mapping creation relies on them: it
+-- inserts with ON CONFLICT DO NOTHING and reads back the row that won.
+--
+-- Duplicates left by earlier races are merged into the oldest mapping for the same
+-- hash: ledger and audit rows that carry a duplicate's token are rewritten first.
+-- Run after create_counterparty_references.sql, which adds the id columns updated here.
+
+\c bank_db;
+
+BEGIN;
+
+CREATE TEMP TABLE duplicate_mappings ON COMMIT DROP AS
+SELECT d.id, d.anonymized_value AS duplicate_token, k.id AS keep_id, k.anonymized_value AS keep_token
+FROM anonymization_mappings d
+JOIN (
+    SELECT DISTINCT ON (original_hash) id, original_hash, anonymized_value
+    FROM anonymization_mappings
+    ORDER BY original_hash, id
+) k ON k.original_hash = d.original_hash AND k.id <> d.id;
+
+UPDATE transactions t SET source_account_number = dm.keep_token
+FROM duplicate_mappings dm WHERE t.source_account_number = dm.duplicate_token;
+
+UPDATE transactions t SET target_account_number = dm.keep_token
+FROM duplicate_mappings dm WHERE t.target_account_number = dm.duplicate_token;
+
+UPDATE transactions t SET source_counterparty_id = dm.keep_id
+FROM duplicate_mappings dm WHERE t.source_counterparty_id = dm.id;
+
+UPDATE transactions t SET target_counterparty_id = dm.keep_id
+FROM duplicate_mappings dm WHERE t.target_counterparty_id = dm.id;
+
+UPDATE audit_log a SET username = dm.keep_token
+FROM duplicate_mappings dm WHERE a.username = dm.duplicate_token;
+
+DELETE FROM anonymization_mappings m USING duplicate_mappings dm WHERE m.id = dm.id;
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_anonymization_mappings_original_hash ON anonymization_mappings(original_hash);
+CREATE UNIQUE INDEX IF NOT EXISTS uk_anonymization_mappings_anonymized_value ON anonymization_mappings(anonymized_value);
+
+COMMIT;
@@ -0,0 +1,30 @@
+-- Adds the account_monthly_summary read model to an existing bank_db and backfills it
+-- from the journal. The unique constraint doubles as the (account_id, month) index the
+-- dashboard summary reads use.
+-- Run while the application is stopped so no movement is counted twice.
+
+\c bank_db;
+
+CREATE TABLE IF NOT EXISTS account_monthly_summary (
+    id SERIAL PRIMARY KEY,
+    account_id BIGINT NOT NULL REFERENCES accounts(id) ON DELETE CASCADE,
+    month DATE NOT NULL,
+    transaction_type VARCHAR(32) NOT NULL,
+    inflow NUMERIC(19,2) NOT NULL DEFAULT 0.00,
+    outflow NUMERIC(19,2) NOT NULL DEFAULT 0.00,
+    tx_count BIGINT NOT NULL DEFAULT 0,
+    CONSTRAINT uk_account_monthly_summary UNIQUE (account_id, month, transaction_type)
+);
+
+INSERT INTO account_monthly_summary (account_id, month, transaction_type, inflow, outflow, tx_count)
+SELECT account_id,
+       date_trunc('month', posted_at)::date,
+       entry_type,
+       COALESCE(SUM(amount) FILTER (WHERE amount >= 0), 0),
+       COALESCE(-SUM(amount) FILTER (WHERE amount < 0), 0),
+       COUNT(*)
+FROM journal_postings
+WHERE account_id IS NOT NULL
+  AND entry_type <> 'OPENING'
+GROUP BY account_id, date_trunc('month', posted_at)::date, entry_type
+ON CONFLICT (account_id, month, transaction_type) DO NOTHING;
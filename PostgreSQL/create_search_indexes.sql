@@ -0,0 +1,13 @@
+-- Indexes backing transaction search. Together with the (account, timestamp, id)
+-- history indexes every supported filter is served by an index scan.
+-- Run outside a transaction block; on a partitioned table create them without
+-- CONCURRENTLY instead.
+
+\c bank_db;
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_type_timestamp_id
+    ON transactions(type, timestamp, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_status_timestamp_id
+    ON transactions(status, timestamp, id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transactions_amount
+    ON transactions(amount);
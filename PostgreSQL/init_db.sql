@@ -31,23 +31,75 @@ CREATE TABLE accounts (
     daily_withdrawal_limit NUMERIC(19,2) DEFAULT 2000.00,
     daily_transfer_total NUMERIC(19,2) DEFAULT 0.00,
     daily_withdrawal_total NUMERIC(19,2) DEFAULT 0.00,
+    daily_totals_date DATE,
     last_interest_calculation TIMESTAMP,
+    version BIGINT NOT NULL DEFAULT 0,
+    hot_slots INT NOT NULL DEFAULT 0,
     user_id INT UNIQUE,
     FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
 );
 
-CREATE TABLE transactions (
+CREATE TABLE account_balance_slots (
     id SERIAL PRIMARY KEY,
+    account_id BIGINT NOT NULL REFERENCES accounts(id) ON DELETE CASCADE,
+    slot INT NOT NULL,
+    balance NUMERIC(19,2) NOT NULL DEFAULT 0.00,
+    CONSTRAINT uk_account_balance_slots_account_slot UNIQUE (account_id, slot)
+);
+
+CREATE SEQUENCE transactions_seq INCREMENT BY 50;
+CREATE SEQUENCE audit_log_seq INCREMENT BY 50;
+CREATE SEQUENCE anonymization_mappings_seq INCREMENT BY 50;
+CREATE SEQUENCE payment_schedules_seq INCREMENT BY 50;
+CREATE SEQUENCE payments_seq INCREMENT BY 50;
+CREATE SEQUENCE journal_postings_seq INCREMENT BY 50;
+
+-- Commit order of journal postings; see journal_commit_order.sql
+CREATE SEQUENCE journal_commit_seq;
+
+-- Takes the transaction id before the number. A reader that reads the sequence and only
+-- then lists the open transactions therefore sees every transaction that may still hold
+-- a number up to what it read.
+CREATE FUNCTION next_journal_commit_seq() RETURNS BIGINT LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM pg_current_xact_id();
+    RETURN nextval('journal_commit_seq');
+END $$;
+
+-- Range-partitioned by month on timestamp; TransactionPartitionService creates
+-- upcoming months when bank.ledger.partitioning.enabled is set. Until then, rows
+-- past the months created below go to the default partition, and the service
+-- moves them into their own month once enabled.
+CREATE TABLE transactions (
+    id BIGINT NOT NULL,
     type VARCHAR(50) NOT NULL,
     amount NUMERIC(19,2) NOT NULL,
     timestamp TIMESTAMP NOT NULL,
     encrypted_description TEXT,
     source_account_number VARCHAR(255),
-    target_account_number VARCHAR(255)
-);
+    target_account_number VARCHAR(255),
+    source_counterparty_id BIGINT,
+    target_counterparty_id BIGINT,
+    status VARCHAR(50),
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+CREATE TABLE transactions_default PARTITION OF transactions DEFAULT;
+
+DO $$
+DECLARE
+    month DATE := date_trunc('month', now());
+    last DATE := date_trunc('month', now()) + INTERVAL '3 months';
+BEGIN
+    WHILE month <= last LOOP
+        EXECUTE format('CREATE TABLE transactions_%s PARTITION OF transactions FOR VALUES FROM (%L) TO (%L)',
+                       to_char(month, '"y"YYYY"m"MM'), month, month + INTERVAL '1 month');
+        month := month + INTERVAL '1 month';
+    END LOOP;
+END $$;
 
 CREATE TABLE audit_log (
-    id SERIAL PRIMARY KEY,
+    id BIGINT PRIMARY KEY,
     action VARCHAR(255) NOT NULL,
     username VARCHAR(255) NOT NULL,
     timestamp TIMESTAMP NOT NULL,
@@ -55,8 +107,10 @@ CREATE TABLE audit_log (
 );
 
 CREATE TABLE anonymization_mappings (
-    id SERIAL PRIMARY KEY,
-    original_hash TEXT UNIQUE NOT NULL,
+    id BIGINT PRIMARY KEY,
+    original_digest BYTEA UNIQUE NOT NULL CHECK (octet_length(original_digest) = 32),
+    -- hex form of original_digest; only filled while bank.anonymization.hash-storage=dual
+    original_hash TEXT UNIQUE,
     anonymized_value TEXT UNIQUE NOT NULL,
     encrypted_original TEXT NOT NULL
 );
@@ -74,7 +128,7 @@ CREATE TABLE loans (
 );
 
 CREATE TABLE payment_schedules (
-    id BIGSERIAL PRIMARY KEY,
+    id BIGINT PRIMARY KEY,
     payment_number INTEGER NOT NULL,
     payment_date DATE NOT NULL,
     principal_amount NUMERIC(19,2) NOT NULL,
@@ -87,7 +141,7 @@ CREATE TABLE payment_schedules (
 );
 
 CREATE TABLE payments (
-    id BIGSERIAL PRIMARY KEY,
+    id BIGINT PRIMARY KEY,
     payment_number INTEGER NOT NULL,
     amount NUMERIC(19,2) NOT NULL,
     payment_date TIMESTAMP NOT NULL,
@@ -95,8 +149,72 @@ CREATE TABLE payments (
     FOREIGN KEY (loan_id) REFERENCES loans(id)
 );
 
+CREATE TABLE journal_postings (
+    id BIGINT PRIMARY KEY,
+    movement_id VARCHAR(36) NOT NULL,
+    account_id BIGINT REFERENCES accounts(id) ON DELETE SET NULL,
+    ledger VARCHAR(32) NOT NULL,
+    entry_type VARCHAR(32) NOT NULL,
+    amount NUMERIC(19,2) NOT NULL,
+    posted_at TIMESTAMP NOT NULL,
+    commit_seq BIGINT NOT NULL DEFAULT next_journal_commit_seq()
+);
+
+CREATE TABLE balance_snapshots (
+    id SERIAL PRIMARY KEY,
+    account_id BIGINT NOT NULL REFERENCES accounts(id) ON DELETE CASCADE,
+    balance NUMERIC(19,2) NOT NULL,
+    last_commit_seq BIGINT NOT NULL,
+    taken_at TIMESTAMP NOT NULL
+);
+
+CREATE TABLE account_monthly_summary (
+    id SERIAL PRIMARY KEY,
+    account_id BIGINT NOT NULL REFERENCES accounts(id) ON DELETE CASCADE,
+    month DATE NOT NULL,
+    transaction_type VARCHAR(32) NOT NULL,
+    -- hot accounts spread their totals over one row per balance slot; 0 otherwise
+    slot INT NOT NULL DEFAULT 0,
+    inflow NUMERIC(19,2) NOT NULL DEFAULT 0.00,
+    outflow NUMERIC(19,2) NOT NULL DEFAULT 0.00,
+    tx_count BIGINT NOT NULL DEFAULT 0,
+    CONSTRAINT uk_account_monthly_summary UNIQUE (account_id, month, transaction_type, slot)
+);
+
+-- Envelope encryption data keys, wrapped under a key-encryption key from configuration;
+-- the highest id is the active one
+CREATE TABLE encryption_keys (
+    id SERIAL PRIMARY KEY,
+    kek_id VARCHAR(64) NOT NULL,
+    wrapped_key TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT now()
+);
+
+-- How far ReEncryptionService got in each table for the data key of its current pass
+CREATE TABLE reencryption_progress (
+    table_name VARCHAR(64) PRIMARY KEY,
+    data_key_id INT NOT NULL,
+    last_id BIGINT NOT NULL,
+    completed BOOLEAN NOT NULL DEFAULT false,
+    updated_at TIMESTAMP NOT NULL
+);
+
+ALTER TABLE transactions
+    ADD CONSTRAINT fk_transactions_source_counterparty FOREIGN KEY (source_counterparty_id) REFERENCES anonymization_mappings(id),
+    ADD CONSTRAINT fk_transactions_target_counterparty FOREIGN KEY (target_counterparty_id) REFERENCES anonymization_mappings(id);
+
 CREATE INDEX idx_users_username ON users(LOWER(username));
 CREATE INDEX idx_users_email ON users(LOWER(email));
 CREATE INDEX idx_accounts_number ON accounts(account_number);
 CREATE INDEX idx_transactions_timestamp ON transactions(timestamp);
+CREATE INDEX idx_transactions_source_timestamp_id ON transactions(source_account_number, timestamp, id);
+CREATE INDEX idx_transactions_target_timestamp_id ON transactions(target_account_number, timestamp, id);
+CREATE INDEX idx_transactions_type_timestamp_id ON transactions(type, timestamp, id);
+CREATE INDEX idx_transactions_status_timestamp_id ON transactions(status, timestamp, id);
+CREATE INDEX idx_transactions_amount ON transactions(amount);
+CREATE INDEX idx_transactions_source_cp_timestamp_id ON transactions(source_counterparty_id, timestamp, id);
+CREATE INDEX idx_transactions_target_cp_timestamp_id ON transactions(target_counterparty_id, timestamp, id);
 CREATE INDEX idx_audit_log_timestamp ON audit_log(timestamp);
+CREATE INDEX idx_journal_postings_account_commit ON journal_postings(account_id, commit_seq);
+CREATE INDEX idx_journal_postings_movement ON journal_postings(movement_id);
+CREATE INDEX idx_balance_snapshots_account ON balance_snapshots(account_id, last_commit_seq);
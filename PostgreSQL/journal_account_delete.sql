@@ -0,0 +1,19 @@
+-- Lets accounts with journal history be deleted again. Postings keep their
+-- rows, so every movement still sums to zero, and lose only the account
+-- reference, as CUSTOMER postings of a closed account. Snapshots are derived
+-- from postings and go with the account.
+-- Only needed where create_journal.sql ran before these ON DELETE actions.
+
+\c bank_db;
+
+BEGIN;
+
+ALTER TABLE journal_postings DROP CONSTRAINT journal_postings_account_id_fkey,
+    ADD CONSTRAINT journal_postings_account_id_fkey
+        FOREIGN KEY (account_id) REFERENCES accounts(id) ON DELETE SET NULL;
+
+ALTER TABLE balance_snapshots DROP CONSTRAINT balance_snapshots_account_id_fkey,
+    ADD CONSTRAINT balance_snapshots_account_id_fkey
+        FOREIGN KEY (account_id) REFERENCES accounts(id) ON DELETE CASCADE;
+
+COMMIT;
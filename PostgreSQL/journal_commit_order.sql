@@ -0,0 +1,50 @@
+-- Orders journal postings by commit instead of by id. Ids come from a pooled-lo
+-- sequence in blocks of 50 per instance, so a lower id can commit after a higher
+-- one and id order cannot tell which postings a snapshot already covers.
+--
+-- Every posting now takes commit_seq from a sequence without caching, after its
+-- transaction id is assigned. JournalService reads the sequence, lists the
+-- transactions open at that point and waits, without locking anything, until
+-- they have ended; every commit_seq up to the value it read then belongs to a
+-- finished transaction. Snapshots are taken up to that watermark.
+--
+-- Existing postings are numbered in id order, which is safe while nothing
+-- writes. Snapshots taken by id are dropped; the next run rebuilds them from the
+-- journal. Run once before deploying; stop writes to accounts while it runs.
+
+\c bank_db;
+
+CREATE SEQUENCE IF NOT EXISTS journal_commit_seq;
+
+-- Takes the transaction id before the number. A reader that reads the sequence and only
+-- then lists the open transactions therefore sees every transaction that may still hold
+-- a number up to what it read.
+CREATE OR REPLACE FUNCTION next_journal_commit_seq() RETURNS BIGINT LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM pg_current_xact_id();
+    RETURN nextval('journal_commit_seq');
+END $$;
+
+BEGIN;
+
+ALTER TABLE journal_postings ADD COLUMN commit_seq BIGINT;
+
+UPDATE journal_postings p SET commit_seq = n.seq
+FROM (SELECT id, row_number() OVER (ORDER BY id) AS seq FROM journal_postings) n
+WHERE p.id = n.id;
+
+SELECT setval('journal_commit_seq', COALESCE((SELECT MAX(commit_seq) FROM journal_postings), 1),
+              EXISTS (SELECT 1 FROM journal_postings));
+
+ALTER TABLE journal_postings ALTER COLUMN commit_seq SET DEFAULT next_journal_commit_seq();
+ALTER TABLE journal_postings ALTER COLUMN commit_seq SET NOT NULL;
+
+DROP INDEX IF EXISTS idx_journal_postings_account_id;
+CREATE INDEX idx_journal_postings_account_commit ON journal_postings(account_id, commit_seq);
+
+DELETE FROM balance_snapshots;
+ALTER TABLE balance_snapshots RENAME COLUMN last_posting_id TO last_commit_seq;
+DROP INDEX IF EXISTS idx_balance_snapshots_account;
+CREATE INDEX idx_balance_snapshots_account ON balance_snapshots(account_id, last_commit_seq);
+
+COMMIT;
@@ -0,0 +1,17 @@
+-- Takes the journal snapshot watermark without blocking posting writers. The
+-- advisory lock protocol from the first version of journal_commit_order.sql
+-- made every posting transaction queue behind the exclusive lock of the
+-- snapshot job for up to its lock_timeout. JournalService now waits for the
+-- transactions open at the watermark instead; see journal_commit_order.sql.
+-- Only needed where that earlier version ran. Deploy the application version
+-- that no longer calls journal_commit_watermark() first.
+
+\c bank_db;
+
+CREATE OR REPLACE FUNCTION next_journal_commit_seq() RETURNS BIGINT LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM pg_current_xact_id();
+    RETURN nextval('journal_commit_seq');
+END $$;
+
+DROP FUNCTION IF EXISTS journal_commit_watermark();
@@ -0,0 +1,53 @@
+-- Moves anonymization_mappings hashes from 64-character hex TEXT to 32-byte bytea, which
+-- roughly halves the unique index and makes lookups plain byte comparisons.
+--
+-- 1. Run this script before deploying a version that writes original_digest. It only adds
+--    the column, so it is safe while the application runs; the application starts in
+--    bank.anonymization.hash-storage=dual and falls back to the hex column for rows the
+--    backfill has not reached yet.
+-- 2. Once the backfill below has finished, set hash-storage=binary on every instance.
+-- 3. Then run the commented steps at the end to drop the hex values and their index.
+--
+-- Run with psql outside an explicit transaction: the backfill commits every batch and
+-- the index is built concurrently.
+
+\c bank_db;
+
+ALTER TABLE anonymization_mappings ADD COLUMN IF NOT EXISTS original_digest BYTEA;
+ALTER TABLE anonymization_mappings ALTER COLUMN original_hash DROP NOT NULL;
+
+DO $$
+DECLARE
+    updated INT;
+BEGIN
+    LOOP
+        UPDATE anonymization_mappings SET original_digest = decode(original_hash, 'hex')
+        WHERE id IN (
+            SELECT id FROM anonymization_mappings
+            WHERE original_digest IS NULL
+            LIMIT 10000
+        );
+        GET DIAGNOSTICS updated = ROW_COUNT;
+        EXIT WHEN updated = 0;
+        COMMIT;
+    END LOOP;
+END $$;
+
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS uk_anonymization_mappings_original_digest
+    ON anonymization_mappings(original_digest);
+
+-- After every instance runs with hash-storage=binary:
+--
+-- ALTER TABLE anonymization_mappings
+--     ADD CONSTRAINT chk_anonymization_mappings_digest_length CHECK (octet_length(original_digest) = 32) NOT VALID;
+-- ALTER TABLE anonymization_mappings VALIDATE CONSTRAINT chk_anonymization_mappings_digest_length;
+-- ALTER TABLE anonymization_mappings ALTER COLUMN original_digest SET NOT NULL;
+-- DROP INDEX CONCURRENTLY IF EXISTS uk_anonymization_mappings_original_hash;
+-- ALTER TABLE anonymization_mappings DROP CONSTRAINT IF EXISTS anonymization_mappings_original_hash_key;
+-- UPDATE anonymization_mappings SET original_hash = NULL;
+-- VACUUM FULL anonymization_mappings;
+--
+-- To go back to dual, restore the hex values first:
+--
+-- UPDATE anonymization_mappings SET original_hash = encode(original_digest, 'hex') WHERE original_hash IS NULL;
+-- CREATE UNIQUE INDEX CONCURRENTLY uk_anonymization_mappings_original_hash ON anonymization_mappings(original_hash);
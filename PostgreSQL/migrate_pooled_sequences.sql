@@ -0,0 +1,17 @@
+-- Moves ledger, audit, loan payment and anonymization ids from SERIAL/IDENTITY
+-- to sequences with increment 50, matching the pooled-lo generators in the entities.
+-- Run once against an existing bank_db before deploying.
+
+\c bank_db;
+
+CREATE SEQUENCE IF NOT EXISTS transactions_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS audit_log_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS payment_schedules_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS payments_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS anonymization_mappings_seq INCREMENT BY 50;
+
+SELECT setval('transactions_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM transactions));
+SELECT setval('audit_log_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM audit_log));
+SELECT setval('payment_schedules_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM payment_schedules));
+SELECT setval('payments_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM payments));
+SELECT setval('anonymization_mappings_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM anonymization_mappings));
@@ -0,0 +1,60 @@
+-- Converts an existing transactions heap into a table range-partitioned by month.
+-- Creates one partition per month from the oldest row up to three months ahead,
+-- copies the rows and swaps the tables. Run during a maintenance window with the
+-- application stopped, then enable bank.ledger.partitioning.enabled so the
+-- application keeps creating partitions ahead of time.
+
+\c bank_db;
+
+BEGIN;
+
+ALTER TABLE transactions RENAME TO transactions_unpartitioned;
+ALTER INDEX IF EXISTS idx_transactions_timestamp RENAME TO idx_transactions_unpartitioned_timestamp;
+ALTER INDEX IF EXISTS idx_transactions_source_timestamp_id RENAME TO idx_transactions_unpartitioned_source;
+ALTER INDEX IF EXISTS idx_transactions_target_timestamp_id RENAME TO idx_transactions_unpartitioned_target;
+ALTER INDEX IF EXISTS idx_transactions_type_timestamp_id RENAME TO idx_transactions_unpartitioned_type;
+ALTER INDEX IF EXISTS idx_transactions_status_timestamp_id RENAME TO idx_transactions_unpartitioned_status;
+ALTER INDEX IF EXISTS idx_transactions_amount RENAME TO idx_transactions_unpartitioned_amount;
+
+CREATE TABLE transactions (
+    id BIGINT NOT NULL,
+    type VARCHAR(50) NOT NULL,
+    amount NUMERIC(19,2) NOT NULL,
+    timestamp TIMESTAMP NOT NULL,
+    encrypted_description TEXT,
+    source_account_number VARCHAR(255),
+    target_account_number VARCHAR(255),
+    status VARCHAR(50),
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+CREATE TABLE transactions_default PARTITION OF transactions DEFAULT;
+
+DO $$
+DECLARE
+    month DATE := date_trunc('month', COALESCE((SELECT MIN(timestamp) FROM transactions_unpartitioned), now()));
+    last DATE := date_trunc('month', now()) + INTERVAL '3 months';
+BEGIN
+    WHILE month <= last LOOP
+        EXECUTE format('CREATE TABLE transactions_%s PARTITION OF transactions FOR VALUES FROM (%L) TO (%L)',
+                       to_char(month, '"y"YYYY"m"MM'), month, month + INTERVAL '1 month');
+        month := month + INTERVAL '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO transactions (id, type, amount, timestamp, encrypted_description,
+                          source_account_number, target_account_number, status)
+SELECT id, type, amount, timestamp, encrypted_description,
+       source_account_number, target_account_number, status
+FROM transactions_unpartitioned;
+
+CREATE INDEX idx_transactions_timestamp ON transactions(timestamp);
+CREATE INDEX idx_transactions_source_timestamp_id ON transactions(source_account_number, timestamp, id);
+CREATE INDEX idx_transactions_target_timestamp_id ON transactions(target_account_number, timestamp, id);
+CREATE INDEX idx_transactions_type_timestamp_id ON transactions(type, timestamp, id);
+CREATE INDEX idx_transactions_status_timestamp_id ON transactions(status, timestamp, id);
+CREATE INDEX idx_transactions_amount ON transactions(amount);
+
+COMMIT;
+
+-- After verifying row counts: DROP TABLE transactions_unpartitioned;
@@ -0,0 +1,18 @@
+-- Lets hot accounts spread their monthly summary over one row per balance slot,
+-- so their credits do not all queue on a single summary row. Existing rows
+-- become slot 0; readers sum the slots of a month.
+-- Deploy the application version that writes the slot column after this has run.
+
+\c bank_db;
+
+ALTER TABLE account_monthly_summary ADD COLUMN IF NOT EXISTS slot INT NOT NULL DEFAULT 0;
+
+-- Built without blocking writes, then swapped in for the old constraint
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS uk_account_monthly_summary_slot
+    ON account_monthly_summary (account_id, month, transaction_type, slot);
+
+BEGIN;
+ALTER TABLE account_monthly_summary DROP CONSTRAINT uk_account_monthly_summary;
+ALTER TABLE account_monthly_summary
+    ADD CONSTRAINT uk_account_monthly_summary UNIQUE USING INDEX uk_account_monthly_summary_slot;
+COMMIT;
@@ -13,7 +13,7 @@ const RecentTransactions = ({ accountNumber }) => {
     useEffect(() => {
         const fetchRecentTransactions = async () => {
             try {
-                const response = await fetch(`${API_BASE_URL}/api/transactions/history`, {
+                const response = await fetch(`${API_BASE_URL}/api/transactions/history?limit=2`, {
                     headers: {
                         'Authorization': `Bearer ${getJwtToken()}`
                     }
@@ -24,7 +24,7 @@ const RecentTransactions = ({ accountNumber }) => {
                 }
 
                 const data = await response.json();
-                setTransactions(data);
+                setTransactions(data.transactions);
             } catch (err) {
                 setError(err.message);
             } finally {
@@ -8,6 +8,8 @@ const TransactionHistoryModal = ({ userAccount, onClose }) => {
     const [name, setName] = useState([]);
     const [loading, setLoading] = useState(true);
     const [error, setError] = useState('');
+    const [nextCursor, setNextCursor] = useState(null);
+    const [loadingMore, setLoadingMore] = useState(false);
     const [selectedTransaction, setSelectedTransaction] = useState(null);
     const [showDetailsModal, setShowDetailsModal] = useState(false);
     const [isClosing, setIsClosing] = useState(false);
@@ -42,26 +44,32 @@ const TransactionHistoryModal = ({ userAccount, onClose }) => {
         return `${amount}$`;
     };
 
+    const fetchPage = async (cursor) => {
+        const query = cursor ? `?cursor=${encodeURIComponent(cursor)}` : '';
+        const response = await fetch(`${API_BASE_URL}/api/transactions/history${query}`, {
+            headers: {
+                'Authorization': `Bearer ${getJwtToken()}`
+            }
+        });
+
+        if (!response.ok) {
+            throw new Error('Failed to fetch transactions');
+        }
+
+        const data = await response.json();
+        setNextCursor(data.hasMore ? data.nextCursor : null);
+        return data.transactions.map(tx => ({
+            ...tx,
+            userAccountNumber: userAccount.accountNumber
+        }));
+    };
+
     useEffect(() => {
         const fetchTransactions = async () => {
             try {
-                const response = await fetch(`${API_BASE_URL}/api/transactions/history`, {
-                    headers: {
-                        'Authorization': `Bearer ${getJwtToken()}`
-                    }
-                });
-
-                if (!response.ok) {
-                    throw new Error('Failed to fetch transactions');
-                }
-
-                const data = await response.json();
+                const firstPage = await fetchPage(null);
                 const userData = await getDashboardData();
-                const transactionsWithAccount = data.map(tx => ({
-                    ...tx,
-                    userAccountNumber: userAccount.accountNumber
-                }));
-                setTransactions(transactionsWithAccount);
+                setTransactions(firstPage);
                 setName(userData.username);
             } catch (err) {
                 setError(err.message);
@@ -75,6 +83,18 @@ const TransactionHistoryModal = ({ userAccount, onClose }) => {
         }
     }, [userAccount]);
 
+    const handleLoadMore = async () => {
+        setLoadingMore(true);
+        try {
+            const page = await fetchPage(nextCursor);
+            setTransactions(prev => [...prev, ...page]);
+        } catch (err) {
+            setError(err.message);
+        } finally {
+            setLoadingMore(false);
+        }
+    };
+
     const handleRowClick = (transaction) => {
         setSelectedTransaction(transaction);
         setShowDetailsModal(true);
@@ -180,6 +200,15 @@ const TransactionHistoryModal = ({ userAccount, onClose }) => {
                                     ))}
                                 </tbody>
                             </table>
+                            {nextCursor && (
+                                <button
+                                    onClick={handleLoadMore}
+                                    disabled={loadingMore}
+                                    className="w-full pt-3 text-purple-400 hover:text-purple-300 text-sm disabled:opacity-50"
+                                >
+                                    {loadingMore ? 'Loading...' : 'Load more'}
+                                </button>
+                            )}
                         </div>
                     )}
                     
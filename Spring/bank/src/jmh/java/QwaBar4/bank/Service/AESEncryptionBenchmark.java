@@ -0,0 +1,99 @@
+package QwaBar4.bank.Service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of AESEncryptionService against the previous implementation, which looked up
+ * a Cipher and created a SecureRandom on every call. Runs on several threads so contention
+ * on the shared DRBG shows up. encryptUniqueIvs fails the run if any IV repeats within an
+ * iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+public class AESEncryptionBenchmark {
+    private static final String KEY = "0123456789abcdef0123456789abcdef";
+    // Typical PII field: a surname or passport number
+    private static final String VALUE = "Konstantinopolskaya";
+
+    private AESEncryptionService service;
+    private SecretKey legacyKey;
+    private String encrypted;
+    private Set<String> ivs;
+
+    @Setup
+    public void setUp() {
+        service = new AESEncryptionService(KEY);
+        legacyKey = new SecretKeySpec(KEY.getBytes(), "AES");
+        encrypted = service.encrypt(VALUE);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetIvs() {
+        ivs = ConcurrentHashMap.newKeySet();
+    }
+
+    @Benchmark
+    public String encrypt() {
+        return service.encrypt(VALUE);
+    }
+
+    @Benchmark
+    public String decrypt() {
+        return service.decrypt(encrypted);
+    }
+
+    @Benchmark
+    public String legacyEncrypt() throws Exception {
+        byte[] iv = new byte[12];
+        new SecureRandom().nextBytes(iv);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.ENCRYPT_MODE, legacyKey, new GCMParameterSpec(128, iv));
+        byte[] encryptedBytes = cipher.doFinal(VALUE.getBytes());
+        byte[] combined = new byte[iv.length + encryptedBytes.length];
+        System.arraycopy(iv, 0, combined, 0, iv.length);
+        System.arraycopy(encryptedBytes, 0, combined, iv.length, encryptedBytes.length);
+        return Base64.getEncoder().encodeToString(combined);
+    }
+
+    @Benchmark
+    public String legacyDecrypt() throws Exception {
+        byte[] combined = Base64.getDecoder().decode(encrypted);
+        byte[] iv = new byte[12];
+        System.arraycopy(combined, 0, iv, 0, iv.length);
+        byte[] cipherBytes = new byte[combined.length - 12];
+        System.arraycopy(combined, 12, cipherBytes, 0, cipherBytes.length);
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        cipher.init(Cipher.DECRYPT_MODE, legacyKey, new GCMParameterSpec(128, iv));
+        return new String(cipher.doFinal(cipherBytes));
+    }
+
+    @Benchmark
+    public String encryptUniqueIvs() {
+        String value = service.encrypt(VALUE);
+        // The first 16 Base64 characters encode exactly the 12-byte IV
+        if (!ivs.add(value.substring(0, 16))) {
+            throw new IllegalStateException("IV repeated: " + value.substring(0, 16));
+        }
+        return value;
+    }
+}
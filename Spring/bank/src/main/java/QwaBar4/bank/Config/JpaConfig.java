@@ -6,6 +6,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 import QwaBar4.bank.Service.AESEncryptionService;
 import QwaBar4.bank.Service.EncryptionConverter;
+import QwaBar4.bank.Service.LazyEncryptionConverter;
 
 @Configuration
 @EnableJpaRepositories(basePackages = "QwaBar4.bank.Repository")
@@ -18,4 +19,9 @@ public class JpaConfig {
     public EncryptionConverter encryptionConverter() {
         return new EncryptionConverter(encryptionService);
     }
+
+    @Bean
+    public LazyEncryptionConverter lazyEncryptionConverter() {
+        return new LazyEncryptionConverter(encryptionService);
+    }
 }
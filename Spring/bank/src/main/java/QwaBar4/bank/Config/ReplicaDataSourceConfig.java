@@ -0,0 +1,78 @@
+package QwaBar4.bank.Config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Replaces the single datasource with primary/replica routing when
+ * bank.datasource.replica.url is set. Without it the application runs on the
+ * auto-configured datasource exactly as before.
+ */
+@Configuration
+@ConditionalOnExpression("!'${bank.datasource.replica.url:}'.isEmpty()")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource(@Value("${bank.datasource.replica.url}") String url,
+                                              @Value("${bank.datasource.replica.username:${spring.datasource.username}}") String username,
+                                              @Value("${bank.datasource.replica.password:${spring.datasource.password}}") String password,
+                                              @Value("${bank.datasource.replica.maximum-pool-size:10}") int maximumPoolSize) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("replica");
+        dataSource.setJdbcUrl(url);
+        dataSource.setUsername(username);
+        dataSource.setPassword(password);
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        dataSource.setAutoCommit(false);
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                               @Value("${bank.datasource.replica.max-lag-ms:1000}") long maxLagMillis) {
+        return new ReplicaLagMonitor(replicaDataSource, maxLagMillis);
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource routingDataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                                      @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                                      ReplicaLagMonitor replicaLagMonitor,
+                                                      @Value("${bank.datasource.replica.read-your-writes-ms:5000}") long readYourWritesMillis) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(
+                replicaLagMonitor, Duration.ofMillis(readYourWritesMillis));
+        routing.setTargetDataSources(Map.<Object, Object>of(
+                ReplicaRoutingDataSource.Target.PRIMARY, primaryDataSource,
+                ReplicaRoutingDataSource.Target.REPLICA, replicaDataSource));
+        routing.setDefaultTargetDataSource(primaryDataSource);
+        return routing;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource routingDataSource) {
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy(routingDataSource);
+        proxy.setDefaultAutoCommit(false);
+        return proxy;
+    }
+}
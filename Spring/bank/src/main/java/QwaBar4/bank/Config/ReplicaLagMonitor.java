@@ -0,0 +1,87 @@
+package QwaBar4.bank.Config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Polls the replica for its replay lag. Read-only work is only routed to the replica
+ * while the last check succeeded, the server is a standby streaming from the primary and
+ * the lag was within the configured bound.
+ */
+public class ReplicaLagMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    // Lag is zero when the standby has replayed everything it received. That says nothing
+    // once the WAL receiver stops, since nothing new arrives, so it only counts while the
+    // receiver is streaming.
+    private static final String LAG_QUERY =
+            "SELECT pg_is_in_recovery() AS standby, " +
+            "EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') AS streaming, " +
+            "CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END AS lag";
+
+    private final JdbcTemplate replica;
+    private final long maxLagMillis;
+
+    private volatile boolean usable;
+    private volatile long lastLagMillis = -1;
+    private volatile String state = "unchecked";
+
+    public ReplicaLagMonitor(DataSource replicaDataSource, long maxLagMillis) {
+        this.replica = new JdbcTemplate(replicaDataSource);
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    @Scheduled(fixedDelayString = "${bank.datasource.replica.lag-check-interval-ms:1000}")
+    public void check() {
+        try {
+            Map<String, Object> row = replica.queryForMap(LAG_QUERY);
+            boolean nowUsable;
+            if (!Boolean.TRUE.equals(row.get("standby"))) {
+                state = "not a standby";
+                lastLagMillis = -1;
+                nowUsable = false;
+            } else if (!Boolean.TRUE.equals(row.get("streaming"))) {
+                state = "not streaming";
+                lastLagMillis = -1;
+                nowUsable = false;
+            } else {
+                state = "streaming";
+                Number lag = (Number) row.get("lag");
+                lastLagMillis = lag == null ? 0 : lag.longValue();
+                nowUsable = lastLagMillis <= maxLagMillis;
+            }
+            if (nowUsable != usable) {
+                logger.info("Replica {} ({}, lag {} ms)", nowUsable ? "in use" : "bypassed", state, lastLagMillis);
+            }
+            usable = nowUsable;
+        } catch (DataAccessException e) {
+            if (usable) {
+                logger.warn("Replica unreachable, routing reads to the primary: {}", e.getMessage());
+            }
+            usable = false;
+            lastLagMillis = -1;
+            state = "unreachable";
+        }
+    }
+
+    public boolean isReplicaUsable() {
+        return usable;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("replicaUsable", usable);
+        metrics.put("replicaState", state);
+        metrics.put("lagMillis", lastLagMillis);
+        metrics.put("maxLagMillis", maxLagMillis);
+        return metrics;
+    }
+}
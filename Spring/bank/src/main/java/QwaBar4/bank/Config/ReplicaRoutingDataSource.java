@@ -0,0 +1,98 @@
+package QwaBar4.bank.Config;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends connections for read-only transactions to the replica and everything else to the
+ * primary. A user who ran a read-write transaction keeps reading from the primary for a
+ * short window, so a balance or history read right after a transfer sees the transfer
+ * even while the replica is catching up. The window starts when the write commits, not
+ * when its connection is fetched, so a long write cannot use up the window before its
+ * changes exist.
+ *
+ * Must sit behind a LazyConnectionDataSourceProxy: the transaction's read-only flag is
+ * only known once the transaction has begun, after the connection would otherwise be
+ * fetched.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public enum Target { PRIMARY, REPLICA }
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final Cache<String, Boolean> recentWriters;
+
+    private final LongAdder primaryConnections = new LongAdder();
+    private final LongAdder replicaConnections = new LongAdder();
+    private final LongAdder lagFallbacks = new LongAdder();
+    private final LongAdder readYourWritesFallbacks = new LongAdder();
+
+    public ReplicaRoutingDataSource(ReplicaLagMonitor lagMonitor, Duration readYourWritesWindow) {
+        this.lagMonitor = lagMonitor;
+        this.recentWriters = CacheBuilder.newBuilder()
+                .expireAfterWrite(readYourWritesWindow)
+                .maximumSize(100_000)
+                .build();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        String user = currentUser();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (user != null) {
+                recordWriter(user);
+            }
+            primaryConnections.increment();
+            return Target.PRIMARY;
+        }
+        if (user != null && recentWriters.getIfPresent(user) != null) {
+            readYourWritesFallbacks.increment();
+            primaryConnections.increment();
+            return Target.PRIMARY;
+        }
+        if (!lagMonitor.isReplicaUsable()) {
+            lagFallbacks.increment();
+            primaryConnections.increment();
+            return Target.PRIMARY;
+        }
+        replicaConnections.increment();
+        return Target.REPLICA;
+    }
+
+    private void recordWriter(String user) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            recentWriters.put(user, Boolean.TRUE);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                recentWriters.put(user, Boolean.TRUE);
+            }
+        });
+    }
+
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null ? authentication.getName() : null;
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>(lagMonitor.getMetrics());
+        metrics.put("primaryConnections", primaryConnections.sum());
+        metrics.put("replicaConnections", replicaConnections.sum());
+        metrics.put("lagFallbacks", lagFallbacks.sum());
+        metrics.put("readYourWritesFallbacks", readYourWritesFallbacks.sum());
+        return metrics;
+    }
+}
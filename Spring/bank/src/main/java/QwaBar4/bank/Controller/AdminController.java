@@ -13,9 +13,11 @@ import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Collections;
 import java.util.stream.Collectors;
 
+import QwaBar4.bank.Config.ReplicaRoutingDataSource;
 import QwaBar4.bank.DTO.*;
 import QwaBar4.bank.Exception.ResourceNotFoundException;
 import QwaBar4.bank.Model.AuditLogModel;
@@ -62,6 +64,36 @@ public class AdminController {
     @Autowired
     private UserModelRepository userRepository;
 
+    @Autowired
+    private TransferEngine transferEngine;
+
+    @Autowired
+    private ConcurrencyRetryExecutor retryExecutor;
+
+    @Autowired
+    private LedgerWriter ledgerWriter;
+
+    @Autowired
+    private JournalService journalService;
+
+    @Autowired
+    private HotAccountService hotAccountService;
+
+    @Autowired
+    private LedgerCounterparties counterparties;
+
+    @Autowired
+    private TransactionSearchService transactionSearchService;
+
+    @Autowired(required = false)
+    private ReplicaRoutingDataSource replicaRouting;
+
+    @Autowired
+    private EncryptionKeyring encryptionKeyring;
+
+    @Autowired
+    private ReEncryptionService reEncryptionService;
+
     @GetMapping("/users/{userId}")
     public ResponseEntity<UserDetailsDTO> getUserDetails(@PathVariable Long userId) {
         UserDetailsDTO userDetails = userModelService.getUserDetails(userId);
@@ -81,7 +113,7 @@ public class AdminController {
 		        .username(user.getUsername())
 		        .email(user.getEmail())
 		        .accountNumber(user.getAccount().getAccountNumber())
-		        .balance(user.getAccount().getBalance())
+		        .balance(user.getAccount().getTotalBalance())
 		        .active(user.isActive())
 		        .roles(user.getRoles())
 		        .firstName(user.getFirstName())
@@ -146,8 +178,8 @@ public class AdminController {
 
         Map<String, String> details = new HashMap<>();
         details.put("originalDescription", encryptionService.decrypt(transaction.getEncryptedDescription()));
-        details.put("originalSourceAccount", anonymizationService.deanonymize(transaction.getSourceAccountNumber()));
-        details.put("originalTargetAccount", anonymizationService.deanonymize(transaction.getTargetAccountNumber()));
+        details.put("originalSourceAccount", counterparties.originalSource(transaction));
+        details.put("originalTargetAccount", counterparties.originalTarget(transaction));
 
         return ResponseEntity.ok(details);
     }
@@ -167,9 +199,10 @@ public class AdminController {
 	public ResponseEntity<List<AuditLogDTO>> getUserAuditLogs(@PathVariable Long userId) {
 		try {
 		    String originalUsername = userModelService.getUserDetails(userId).getUsername();
-		    String anonymizedUsername = anonymizationService.anonymize(originalUsername);
-		    
-		    List<AuditLogModel> auditLogs = auditLogRepository.findByUsername(anonymizedUsername);
+		    // A user without a mapping has never been logged; no need to create one here
+		    List<AuditLogModel> auditLogs = anonymizationService.findAnonymized(originalUsername)
+		        .map(auditLogRepository::findByUsername)
+		        .orElse(Collections.emptyList());
 		    
 		    List<AuditLogDTO> auditLogDTOs = auditLogs.stream()
 		        .map(log -> new AuditLogDTO(
@@ -204,6 +237,139 @@ public class AdminController {
 		}
 	}
 
+    @GetMapping("/metrics/transfers")
+    public ResponseEntity<Map<String, Object>> getTransferMetrics() {
+        return ResponseEntity.ok(transferEngine.getMetrics());
+    }
+
+    @GetMapping("/metrics/contention")
+    public ResponseEntity<Map<String, Object>> getContentionMetrics() {
+        return ResponseEntity.ok(retryExecutor.getMetrics());
+    }
+
+    @GetMapping("/metrics/ledger")
+    public ResponseEntity<Map<String, Object>> getLedgerMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>(ledgerWriter.getMetrics());
+        metrics.put("journalSnapshots", journalService.getSnapshotMetrics());
+        return ResponseEntity.ok(metrics);
+    }
+
+    @GetMapping("/metrics/anonymization")
+    public ResponseEntity<Map<String, Object>> getAnonymizationMetrics() {
+        return ResponseEntity.ok(anonymizationService.getCacheMetrics());
+    }
+
+    // Clears cached mappings on every instance, e.g. after repairing anonymization_mappings by hand
+    @PostMapping("/anonymization/cache/invalidate")
+    public ResponseEntity<Void> invalidateAnonymizationCache(
+            @RequestBody(required = false) List<String> tokens) {
+        if (tokens == null || tokens.isEmpty()) {
+            anonymizationService.invalidateAll();
+        } else {
+            anonymizationService.invalidate(tokens);
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/metrics/encryption")
+    public ResponseEntity<Map<String, Object>> getEncryptionMetrics() {
+        Map<String, Object> metrics = new HashMap<>();
+        metrics.put("keyring", encryptionKeyring.getMetrics());
+        metrics.put("reEncryption", reEncryptionService.getMetrics());
+        return ResponseEntity.ok(metrics);
+    }
+
+    // New values use the new data key at once; existing ones move over with the re-encryption job
+    @PostMapping("/encryption/keys/rotate")
+    public ResponseEntity<?> rotateDataKey() {
+        try {
+            return ResponseEntity.ok(Collections.singletonMap("activeDataKey", encryptionKeyring.rotate().getId()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // Re-wraps data keys under the active key-encryption key
+    @PostMapping("/encryption/keys/rewrap")
+    public ResponseEntity<?> rewrapDataKeys() {
+        try {
+            return ResponseEntity.ok(Collections.singletonMap("rewrapped", encryptionKeyring.rewrap()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/encryption/reencrypt")
+    public ResponseEntity<?> startReEncryption() {
+        try {
+            return ResponseEntity.ok(Collections.singletonMap("started", reEncryptionService.start()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/encryption/reencrypt/stop")
+    public ResponseEntity<Void> stopReEncryption() {
+        reEncryptionService.stop();
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/transactions/search")
+    public ResponseEntity<?> searchTransactions(
+            @RequestParam(required = false) String account,
+            @ModelAttribute TransactionSearchCriteriaDTO criteria) {
+        try {
+            return ResponseEntity.ok(transactionSearchService.searchAll(account, criteria));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/metrics/replica")
+    public ResponseEntity<Map<String, Object>> getReplicaMetrics() {
+        if (replicaRouting == null) {
+            return ResponseEntity.ok(Collections.singletonMap("enabled", false));
+        }
+        Map<String, Object> metrics = new HashMap<>(replicaRouting.getMetrics());
+        metrics.put("enabled", true);
+        return ResponseEntity.ok(metrics);
+    }
+
+    @GetMapping("/accounts/{accountId}/journal-balance")
+    public ResponseEntity<Map<String, Object>> getJournalBalance(@PathVariable Long accountId) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("accountId", accountId);
+        response.put("journalBalance", journalService.currentBalance(accountId));
+        return ResponseEntity.ok(response);
+    }
+
+    @PostMapping("/accounts/{accountId}/rebuild-balance")
+    public ResponseEntity<?> rebuildBalance(@PathVariable Long accountId) {
+        try {
+            return ResponseEntity.ok(journalService.rebuildBalance(accountId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @PostMapping("/accounts/{accountId}/hot-slots")
+    public ResponseEntity<?> enableHotAccount(@PathVariable Long accountId, @RequestParam int slots) {
+        try {
+            return ResponseEntity.ok(hotAccountService.enable(accountId, slots));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/accounts/{accountId}/hot-slots")
+    public ResponseEntity<?> disableHotAccount(@PathVariable Long accountId) {
+        try {
+            return ResponseEntity.ok(hotAccountService.disable(accountId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @PostMapping("/deanonymize")
     @PreAuthorize("hasRole('ADMIN')")
     public ResponseEntity<?> deanonymizeValue(
@@ -77,7 +77,7 @@ public class DashboardController {
 		    AccountDTO accountDTO = new AccountDTO(
 		        null,
 		        account.getAccountNumber(),
-		        account.getBalance(),
+		        account.getTotalBalance(),
 		        null,
 		        null
 		    );
@@ -105,7 +105,7 @@ public class DashboardController {
 		        .username(user.getUsername())
 		        .email(user.getEmail())
 		        .accountNumber(user.getAccount().getAccountNumber())
-		        .balance(user.getAccount().getBalance())
+		        .balance(user.getAccount().getTotalBalance())
 		        .roles(user.getRoles())
 		        .firstName(user.getFirstName())
 		        .lastName(user.getLastName())
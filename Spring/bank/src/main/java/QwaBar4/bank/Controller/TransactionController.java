@@ -1,9 +1,12 @@
 package QwaBar4.bank.Controller;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import QwaBar4.bank.Model.*;
 import QwaBar4.bank.DTO.*;
 import QwaBar4.bank.Service.*;
@@ -22,18 +25,27 @@ public class TransactionController {
     private final UserModelRepository userRepo;
     private final TransactionService transactionService;
     private final AccountNumberUtils accountNumberUtils;
+    private final TransactionExportService transactionExportService;
+    private final TransactionSearchService transactionSearchService;
+    private final MonthlySummaryService monthlySummaryService;
 
     @Autowired
     public TransactionController(AccountModelRepository accountRepo,
                                   TransactionModelRepository transactionRepo,
                                   UserModelRepository userRepo,
                                   TransactionService transactionService,
-                                  AccountNumberUtils accountNumberUtils) {
+                                  AccountNumberUtils accountNumberUtils,
+                                  TransactionExportService transactionExportService,
+                                  TransactionSearchService transactionSearchService,
+                                  MonthlySummaryService monthlySummaryService) {
         this.accountRepo = accountRepo;
         this.transactionRepo = transactionRepo;
         this.userRepo = userRepo;
         this.transactionService = transactionService;
         this.accountNumberUtils = accountNumberUtils;
+        this.transactionExportService = transactionExportService;
+        this.transactionSearchService = transactionSearchService;
+        this.monthlySummaryService = monthlySummaryService;
     }
 
     @PostMapping("/transfer")
@@ -64,14 +76,43 @@ public class TransactionController {
         }
     }
 
+    @PostMapping("/transfer/batch")
+    public ResponseEntity<?> batchTransfer(
+        @RequestBody BatchTransferRequestDTO request,
+        Authentication authentication
+    ) {
+        try {
+            String srcAcc = accountNumberUtils.convertFormattedNumberToUuid(request.getSourceAccount());
+
+            BatchTransferResponseDTO result = transactionService.processBatchTransfer(
+                srcAcc,
+                request.getTransfers(),
+                authentication.getName()
+            );
+
+            return ResponseEntity.ok(result);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
     @GetMapping("/history")
-    public ResponseEntity<List<TransactionDTO>> getTransactionHistory(Authentication authentication) {
+    public ResponseEntity<?> getTransactionHistory(
+        @RequestParam(required = false) String cursor,
+        @RequestParam(required = false) Integer limit,
+        Authentication authentication
+    ) {
         UserModel user = userRepo.findByUsername(authentication.getName())
             .orElseThrow(() -> new RuntimeException("User not found"));
 
-        List<TransactionDTO> transactions = transactionService.getUserTransactions(user.getId());
-        
-        transactions.forEach(tx -> {
+        TransactionPageDTO page;
+        try {
+            page = transactionService.getUserTransactionsPage(user.getId(), cursor, limit);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+
+        page.getTransactions().forEach(tx -> {
             if (tx.getSourceAccountOwner() == null) {
                 tx.setSourceAccountOwner("Anonymous User");
             }
@@ -80,7 +121,48 @@ public class TransactionController {
             }
         });
         
-        return ResponseEntity.ok(transactions);
+        return ResponseEntity.ok(page);
+    }
+
+    @GetMapping("/summary")
+    public ResponseEntity<List<MonthlySummaryDTO>> getMonthlySummary(
+        @RequestParam(defaultValue = "24") int months,
+        Authentication authentication
+    ) {
+        return ResponseEntity.ok(monthlySummaryService.getSummary(authentication.getName(), months));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<?> searchTransactions(
+        @ModelAttribute TransactionSearchCriteriaDTO criteria,
+        Authentication authentication
+    ) {
+        try {
+            return ResponseEntity.ok(transactionSearchService.searchForUser(authentication.getName(), criteria));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<?> exportTransactionHistory(
+        @RequestParam(defaultValue = "ndjson") String format,
+        Authentication authentication
+    ) {
+        TransactionExportService.Format exportFormat;
+        try {
+            exportFormat = TransactionExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Unsupported export format: " + format);
+        }
+
+        StreamingResponseBody body = transactionExportService.export(authentication.getName(), exportFormat);
+        boolean csv = exportFormat == TransactionExportService.Format.CSV;
+        return ResponseEntity.ok()
+            .contentType(csv ? new MediaType("text", "csv") : MediaType.parseMediaType("application/x-ndjson"))
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename=transactions." + (csv ? "csv" : "ndjson"))
+            .body(body);
     }
 
     @GetMapping("/balance")
@@ -105,7 +187,7 @@ public class TransactionController {
             );
 
             BigDecimal newBalance = accountRepo.findByAccountNumber(accNumber)
-                .orElseThrow(() -> new RuntimeException("Account not found")).getBalance();
+                .orElseThrow(() -> new RuntimeException("Account not found")).getTotalBalance();
 
             Map<String, Object> response = new HashMap<>();
             response.put("transaction", transaction);
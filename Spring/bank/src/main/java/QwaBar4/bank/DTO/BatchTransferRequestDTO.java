@@ -0,0 +1,18 @@
+package QwaBar4.bank.DTO;
+
+import lombok.Data;
+import java.util.List;
+import java.math.BigDecimal;
+
+@Data
+public class BatchTransferRequestDTO {
+    private String sourceAccount;
+    private List<TransferItemDTO> transfers;
+
+    @Data
+    public static class TransferItemDTO {
+        private String targetAccount;
+        private BigDecimal amount;
+        private String description;
+    }
+}
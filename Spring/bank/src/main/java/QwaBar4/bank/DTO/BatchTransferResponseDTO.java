@@ -0,0 +1,35 @@
+package QwaBar4.bank.DTO;
+
+import lombok.Data;
+import java.util.ArrayList;
+import java.util.List;
+import java.math.BigDecimal;
+
+@Data
+public class BatchTransferResponseDTO {
+    private BigDecimal totalAmount;
+    private BigDecimal newBalance;
+    private int completed;
+    private int rejected;
+    private List<ItemResultDTO> results = new ArrayList<>();
+
+    @Data
+    public static class ItemResultDTO {
+        private int index;
+        private String targetAccount;
+        private BigDecimal amount;
+        private String status;
+        private String message;
+
+        public ItemResultDTO() {
+        }
+
+        public ItemResultDTO(int index, String targetAccount, BigDecimal amount, String status, String message) {
+            this.index = index;
+            this.targetAccount = targetAccount;
+            this.amount = amount;
+            this.status = status;
+            this.message = message;
+        }
+    }
+}
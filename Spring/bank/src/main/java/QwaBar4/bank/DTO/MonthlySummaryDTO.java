@@ -0,0 +1,25 @@
+package QwaBar4.bank.DTO;
+
+import lombok.Data;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+@Data
+public class MonthlySummaryDTO {
+    private LocalDate month;
+    private String type;
+    private BigDecimal inflow;
+    private BigDecimal outflow;
+    private long count;
+
+    public MonthlySummaryDTO() {
+    }
+
+    public MonthlySummaryDTO(LocalDate month, String type, BigDecimal inflow, BigDecimal outflow, long count) {
+        this.month = month;
+        this.type = type;
+        this.inflow = inflow;
+        this.outflow = outflow;
+        this.count = count;
+    }
+}
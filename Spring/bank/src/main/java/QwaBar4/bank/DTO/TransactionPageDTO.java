@@ -0,0 +1,13 @@
+package QwaBar4.bank.DTO;
+
+import lombok.Data;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+public class TransactionPageDTO {
+    private List<TransactionDTO> transactions = new ArrayList<>();
+    // Opaque cursor for the next (older) page; null on the last page
+    private String nextCursor;
+    private boolean hasMore;
+}
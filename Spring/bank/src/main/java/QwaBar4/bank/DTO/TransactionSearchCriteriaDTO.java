@@ -0,0 +1,22 @@
+package QwaBar4.bank.DTO;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Data
+public class TransactionSearchCriteriaDTO {
+    private String type;
+    private String status;
+    private BigDecimal minAmount;
+    private BigDecimal maxAmount;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime from;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime to;
+    // Formatted account number of the other party
+    private String counterparty;
+    private String cursor;
+    private Integer limit;
+}
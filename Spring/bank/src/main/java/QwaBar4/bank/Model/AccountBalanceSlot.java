@@ -0,0 +1,47 @@
+package QwaBar4.bank.Model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+
+@Entity
+@Table(name = "account_balance_slots", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_account_balance_slots_account_slot", columnNames = {"account_id", "slot"})
+})
+public class AccountBalanceSlot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false, updatable = false)
+    private Long accountId;
+
+    @Column(nullable = false, updatable = false)
+    private int slot;
+
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal balance = BigDecimal.ZERO;
+
+    public AccountBalanceSlot() {}
+
+    public AccountBalanceSlot(Long accountId, int slot) {
+        this.accountId = accountId;
+        this.slot = slot;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+}
@@ -0,0 +1,57 @@
+package QwaBar4.bank.Model;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+@Repository
+public interface AccountBalanceSlotRepository extends JpaRepository<AccountBalanceSlot, Long> {
+
+    @Query("SELECT MAX(s.slot) FROM AccountBalanceSlot s WHERE s.accountId = :accountId")
+    Optional<Integer> findHighestSlot(@Param("accountId") Long accountId);
+
+    @Modifying
+    @Query(value = "UPDATE account_balance_slots SET balance = balance + :amount " +
+                   "WHERE account_id = :accountId AND slot = :slot", nativeQuery = true)
+    int creditSlot(@Param("accountId") Long accountId, @Param("slot") int slot, @Param("amount") BigDecimal amount);
+
+    @Query(value = "UPDATE account_balance_slots s SET balance = s.balance + :amount " +
+                   "FROM accounts a JOIN users u ON u.id = a.user_id " +
+                   "WHERE s.account_id = a.id AND s.slot = :slot " +
+                   "AND a.account_number = :accountNumber AND u.username = :username " +
+                   "RETURNING a.id AS id, s.balance AS balance", nativeQuery = true)
+    Optional<AccountBalanceView> creditOwnedSlot(@Param("accountNumber") String accountNumber,
+                                                 @Param("username") String username,
+                                                 @Param("slot") int slot,
+                                                 @Param("amount") BigDecimal amount);
+
+    // Empties every slot of the account under row locks and returns what they held;
+    // the caller adds the amount to the already locked account row.
+    @Query(value = "WITH swept AS (" +
+                   "    UPDATE account_balance_slots s SET balance = 0 " +
+                   "    FROM (SELECT id, balance FROM account_balance_slots " +
+                   "          WHERE account_id = :accountId AND balance <> 0 ORDER BY slot FOR UPDATE) old " +
+                   "    WHERE s.id = old.id RETURNING old.balance) " +
+                   "SELECT COALESCE(SUM(balance), 0) FROM swept", nativeQuery = true)
+    BigDecimal sweep(@Param("accountId") Long accountId);
+
+    // Same as sweep, but moves the amount into accounts.balance in the same statement
+    // for callers that never load the account entity.
+    @Modifying
+    @Query(value = "WITH swept AS (" +
+                   "    UPDATE account_balance_slots s SET balance = 0 " +
+                   "    FROM (SELECT bs.id, bs.balance FROM account_balance_slots bs " +
+                   "          JOIN accounts a ON a.id = bs.account_id " +
+                   "          WHERE a.account_number = :accountNumber AND bs.balance <> 0 " +
+                   "          ORDER BY bs.slot FOR UPDATE OF bs) old " +
+                   "    WHERE s.id = old.id RETURNING s.account_id, old.balance) " +
+                   "UPDATE accounts a SET balance = a.balance + t.total, version = a.version + 1 " +
+                   "FROM (SELECT account_id, SUM(balance) AS total FROM swept GROUP BY account_id) t " +
+                   "WHERE a.id = t.account_id", nativeQuery = true)
+    int sweepIntoAccount(@Param("accountNumber") String accountNumber);
+}
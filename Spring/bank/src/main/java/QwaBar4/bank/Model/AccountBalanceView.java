@@ -0,0 +1,8 @@
+package QwaBar4.bank.Model;
+
+import java.math.BigDecimal;
+
+public interface AccountBalanceView {
+    Long getId();
+    BigDecimal getBalance();
+}
@@ -1,7 +1,9 @@
 package QwaBar4.bank.Model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Formula;
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -32,9 +34,24 @@ public class AccountModel {
     @Column(name = "daily_withdrawal_total", precision = 19, scale = 2)
     private BigDecimal dailyWithdrawalTotal = BigDecimal.ZERO;
 
+    @Column(name = "daily_totals_date")
+    private LocalDate dailyTotalsDate;
+
     @Column(name = "last_interest_calculation")
     private LocalDateTime lastInterestCalculation;
 
+    @Version
+    @Column(columnDefinition = "BIGINT NOT NULL DEFAULT 0")
+    private long version;
+
+    // Number of sub-balance slots credits are spread over; 0 keeps the whole balance on this row
+    @Column(name = "hot_slots", columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int hotSlots;
+
+    // Credits parked in balance slots that have not been swept into this row yet
+    @Formula("(SELECT COALESCE(SUM(s.balance), 0) FROM account_balance_slots s WHERE s.account_id = id)")
+    private BigDecimal slotBalance;
+
 	@OneToOne
 	@JoinColumn(name = "user_id", nullable = false, updatable = false)
     private UserModel user;
@@ -64,6 +81,23 @@ public class AccountModel {
         this.balance = balance;
     }
 
+    public BigDecimal getSlotBalance() {
+        return slotBalance != null ? slotBalance : BigDecimal.ZERO;
+    }
+
+    // Balance as seen by the customer: this row plus credits still parked in slots
+    public BigDecimal getTotalBalance() {
+        return balance != null ? balance.add(getSlotBalance()) : getSlotBalance();
+    }
+
+    public int getHotSlots() {
+        return hotSlots;
+    }
+
+    public void setHotSlots(int hotSlots) {
+        this.hotSlots = hotSlots;
+    }
+
     public BigDecimal getDailyTransferLimit() {
         return dailyTransferLimit;
     }
@@ -80,6 +114,39 @@ public class AccountModel {
         this.dailyWithdrawalLimit = dailyWithdrawalLimit;
     }
 
+    // Daily totals reset lazily on the first movement of a new day
+    public void rollDailyTotals(LocalDate today) {
+        if (!today.equals(dailyTotalsDate)) {
+            dailyTransferTotal = BigDecimal.ZERO;
+            dailyWithdrawalTotal = BigDecimal.ZERO;
+            dailyTotalsDate = today;
+        }
+    }
+
+    public BigDecimal getDailyTransferTotal() {
+        return dailyTransferTotal;
+    }
+
+    public void setDailyTransferTotal(BigDecimal dailyTransferTotal) {
+        this.dailyTransferTotal = dailyTransferTotal;
+    }
+
+    public BigDecimal getDailyWithdrawalTotal() {
+        return dailyWithdrawalTotal;
+    }
+
+    public void setDailyWithdrawalTotal(BigDecimal dailyWithdrawalTotal) {
+        this.dailyWithdrawalTotal = dailyWithdrawalTotal;
+    }
+
+    public LocalDate getDailyTotalsDate() {
+        return dailyTotalsDate;
+    }
+
+    public void setDailyTotalsDate(LocalDate dailyTotalsDate) {
+        this.dailyTotalsDate = dailyTotalsDate;
+    }
+
     public LocalDateTime getLastInterestCalculation() {
         return lastInterestCalculation;
     }
@@ -88,6 +155,10 @@ public class AccountModel {
         this.lastInterestCalculation = lastInterestCalculation;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
     public UserModel getUser () {
         return user;
     }
@@ -1,7 +1,15 @@
 package QwaBar4.bank.Model;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import QwaBar4.bank.Utils.AccountNumberUtils;
 
@@ -9,4 +17,45 @@ import QwaBar4.bank.Utils.AccountNumberUtils;
 public interface AccountModelRepository extends JpaRepository<AccountModel, Long> {
     Optional<AccountModel> findByAccountNumber(String accountNumber);
     Optional<AccountModel> findByUserUsername(String username);
+    List<AccountModel> findAllByAccountNumberIn(Collection<String> accountNumbers);
+
+    // Raw account number and owner username pairs, without loading the account entities
+    @Query("SELECT a.accountNumber, u.username FROM AccountModel a JOIN a.user u WHERE a.accountNumber IN :accountNumbers")
+    List<Object[]> findOwnersByAccountNumberIn(@Param("accountNumbers") Collection<String> accountNumbers);
+
+    @Query("SELECT a.accountNumber, a.hotSlots, a.id FROM AccountModel a WHERE a.hotSlots > 0")
+    List<Object[]> findHotAccountSlots();
+
+    // The conditional updates below check and move the balance in a single statement and
+    // return the account id and new balance, or nothing when the account is missing or the check fails.
+    // Daily totals roll over lazily: a row whose daily_totals_date is not today counts as zero.
+    @Query(value = "UPDATE accounts a SET balance = a.balance + :amount, version = a.version + 1 " +
+                   "FROM users u WHERE u.id = a.user_id AND a.account_number = :accountNumber AND u.username = :username " +
+                   "RETURNING a.id AS id, a.balance AS balance", nativeQuery = true)
+    Optional<AccountBalanceView> creditOwnedAccount(@Param("accountNumber") String accountNumber,
+                                            @Param("username") String username,
+                                            @Param("amount") BigDecimal amount);
+
+    @Query(value = "UPDATE accounts SET balance = balance - :amount, " +
+                   "daily_withdrawal_total = CASE WHEN daily_totals_date = :today THEN COALESCE(daily_withdrawal_total, 0) ELSE 0 END + :amount, " +
+                   "daily_transfer_total = CASE WHEN daily_totals_date = :today THEN COALESCE(daily_transfer_total, 0) ELSE 0 END, " +
+                   "daily_totals_date = :today, version = version + 1 " +
+                   "WHERE account_number = :accountNumber AND balance >= :amount " +
+                   "AND (daily_withdrawal_limit IS NULL OR " +
+                   "CASE WHEN daily_totals_date = :today THEN COALESCE(daily_withdrawal_total, 0) ELSE 0 END + :amount <= daily_withdrawal_limit) " +
+                   "RETURNING id AS id, balance AS balance", nativeQuery = true)
+    Optional<AccountBalanceView> debitWithinDailyLimit(@Param("accountNumber") String accountNumber,
+                                               @Param("amount") BigDecimal amount,
+                                               @Param("today") LocalDate today);
+
+    @Query(value = "UPDATE accounts SET balance = balance - :amount, version = version + 1 " +
+                   "WHERE account_number = :accountNumber AND balance >= :amount " +
+                   "RETURNING id AS id, balance AS balance", nativeQuery = true)
+    Optional<AccountBalanceView> debit(@Param("accountNumber") String accountNumber, @Param("amount") BigDecimal amount);
+
+    // Rows are locked in id order so that concurrent transfers touching the same
+    // accounts always acquire their locks in the same sequence and cannot deadlock.
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM AccountModel a WHERE a.accountNumber IN :accountNumbers ORDER BY a.id")
+    List<AccountModel> findAllForUpdateOrderById(@Param("accountNumbers") Collection<String> accountNumbers);
 }
@@ -0,0 +1,76 @@
+package QwaBar4.bank.Model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Per-account, per-month, per-type totals of money moved, kept up to date in the same
+ * database transaction as the journal postings they summarize. A hot account spreads its
+ * totals over as many slot rows as it has balance slots; readers sum the slots.
+ */
+@Entity
+@Table(name = "account_monthly_summary", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_account_monthly_summary", columnNames = {"account_id", "month", "transaction_type", "slot"})
+})
+public class AccountMonthlySummary {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    // First day of the month
+    @Column(nullable = false)
+    private LocalDate month;
+
+    @Column(name = "transaction_type", nullable = false, length = 32)
+    private String transactionType;
+
+    // Always 0 for accounts that are not hot
+    @Column(nullable = false, columnDefinition = "INT NOT NULL DEFAULT 0")
+    private int slot;
+
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal inflow;
+
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal outflow;
+
+    @Column(name = "tx_count", nullable = false)
+    private long count;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public LocalDate getMonth() {
+        return month;
+    }
+
+    public String getTransactionType() {
+        return transactionType;
+    }
+
+    public int getSlot() {
+        return slot;
+    }
+
+    public BigDecimal getInflow() {
+        return inflow;
+    }
+
+    public BigDecimal getOutflow() {
+        return outflow;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,36 @@
+package QwaBar4.bank.Model;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface AccountMonthlySummaryRepository extends JpaRepository<AccountMonthlySummary, Long> {
+
+    // month, type, inflow, outflow, count with the slot rows of hot accounts summed up
+    @Query("SELECT s.month, s.transactionType, SUM(s.inflow), SUM(s.outflow), SUM(s.count) " +
+           "FROM AccountMonthlySummary s WHERE s.accountId = :accountId AND s.month >= :fromMonth " +
+           "GROUP BY s.month, s.transactionType ORDER BY s.month DESC, s.transactionType ASC")
+    List<Object[]> sumByMonthAndType(@Param("accountId") Long accountId, @Param("fromMonth") LocalDate fromMonth);
+
+    @Modifying
+    @Query(value = "INSERT INTO account_monthly_summary (account_id, month, transaction_type, slot, inflow, outflow, tx_count) " +
+                   "VALUES (:accountId, :month, :type, :slot, :inflow, :outflow, :count) " +
+                   "ON CONFLICT (account_id, month, transaction_type, slot) DO UPDATE SET " +
+                   "inflow = account_monthly_summary.inflow + EXCLUDED.inflow, " +
+                   "outflow = account_monthly_summary.outflow + EXCLUDED.outflow, " +
+                   "tx_count = account_monthly_summary.tx_count + EXCLUDED.tx_count", nativeQuery = true)
+    int add(@Param("accountId") Long accountId,
+            @Param("month") LocalDate month,
+            @Param("type") String type,
+            @Param("slot") int slot,
+            @Param("inflow") BigDecimal inflow,
+            @Param("outflow") BigDecimal outflow,
+            @Param("count") long count);
+}
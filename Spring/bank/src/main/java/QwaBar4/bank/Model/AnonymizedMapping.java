@@ -2,18 +2,28 @@ package QwaBar4.bank.Model;
 
 import jakarta.persistence.*;
 
+import java.util.HexFormat;
+
 @Entity
 @Table(name = "anonymization_mappings")
 public class AnonymizedMapping {
 
+    // insertIfAbsent draws ids straight from the sequence; each nextval claims a whole
+    // allocation block, so those ids never overlap with ones Hibernate hands out
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "anonymization_mappings_seq")
+    @SequenceGenerator(name = "anonymization_mappings_seq", sequenceName = "anonymization_mappings_seq", allocationSize = 50)
     private Long id;
     
-    @Column(columnDefinition = "TEXT")
+    // Raw SHA-256 of the salted original. The hex original_hash it replaces is only still
+    // written and read while bank.anonymization.hash-storage=dual
+    @Column(columnDefinition = "BYTEA", unique = true)
+    private byte[] originalDigest;
+
+    @Column(columnDefinition = "TEXT", unique = true)
     private String originalHash;
     
-    @Column(columnDefinition = "TEXT")
+    @Column(columnDefinition = "TEXT", unique = true, nullable = false)
     private String anonymizedValue;
     
     @Column(columnDefinition = "TEXT")
@@ -27,7 +37,19 @@ public class AnonymizedMapping {
         this.id = id;
     }
 
+    public byte[] getOriginalDigest() {
+        return originalDigest;
+    }
+
+    public void setOriginalDigest(byte[] originalDigest) {
+        this.originalDigest = originalDigest;
+    }
+
+    // Hex form of the hash, whichever column the row carries it in
     public String getOriginalHash() {
+        if (originalHash == null && originalDigest != null) {
+            return HexFormat.of().formatHex(originalDigest);
+        }
         return originalHash;
     }
 
@@ -1,12 +1,49 @@
 package QwaBar4.bank.Model;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface AnonymizedMappingRepository extends JpaRepository<AnonymizedMapping, Long> {
+    Optional<AnonymizedMapping> findByOriginalDigest(byte[] originalDigest);
+    List<AnonymizedMapping> findByOriginalDigestIn(Collection<byte[]> originalDigests);
     Optional<AnonymizedMapping> findByOriginalHash(String originalHash);
+    List<AnonymizedMapping> findByOriginalHashIn(Collection<String> originalHashes);
     Optional<AnonymizedMapping> findByAnonymizedValue(String anonymizedValue);
+    List<AnonymizedMapping> findByAnonymizedValueIn(Collection<String> anonymizedValues);
+    List<AnonymizedMapping> findByIdIn(Collection<Long> ids);
+
+    // (id, digest, hex hash) pages, in id order, of mappings whose token does not match the pattern
+    @Query("SELECT m.id, m.originalDigest, m.originalHash FROM AnonymizedMapping m " +
+           "WHERE m.id > :afterId AND m.anonymizedValue NOT LIKE :pattern ORDER BY m.id")
+    List<Object[]> findHashesNotLike(@Param("pattern") String pattern, @Param("afterId") long afterId, Pageable page);
+
+    // Same pages for the mappings whose token matches the pattern
+    @Query("SELECT m.id, m.originalDigest, m.originalHash FROM AnonymizedMapping m " +
+           "WHERE m.id > :afterId AND m.anonymizedValue LIKE :pattern ORDER BY m.id")
+    List<Object[]> findHashesLike(@Param("pattern") String pattern, @Param("afterId") long afterId, Pageable page);
+
+    long countByAnonymizedValueLike(String pattern);
+
+    // Inserts the given rows in one statement and returns the ones actually inserted; rows
+    // that clash with an existing hash or token are skipped instead of failing the transaction.
+    // Hashes are passed as hex and stored as bytea, and also as hex when keepHex is set.
+    @Query(value = "INSERT INTO anonymization_mappings (id, original_digest, original_hash, anonymized_value, encrypted_original) " +
+                   "SELECT nextval('anonymization_mappings_seq'), decode(v.original_hash, 'hex'), " +
+                   "CASE WHEN :keepHex THEN v.original_hash END, v.anonymized_value, v.encrypted_original " +
+                   "FROM unnest(CAST(:hashes AS text[]), CAST(:tokens AS text[]), CAST(:encrypted AS text[])) " +
+                   "AS v(original_hash, anonymized_value, encrypted_original) " +
+                   "ON CONFLICT DO NOTHING " +
+                   "RETURNING *", nativeQuery = true)
+    List<AnonymizedMapping> insertIfAbsent(@Param("hashes") String[] originalHashes,
+                                           @Param("tokens") String[] anonymizedValues,
+                                           @Param("encrypted") String[] encryptedOriginals,
+                                           @Param("keepHex") boolean keepHex);
 }
@@ -8,7 +8,8 @@ import java.time.LocalDateTime;
 @Table(name = "audit_log")
 public class AuditLogModel {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "audit_log_seq")
+    @SequenceGenerator(name = "audit_log_seq", sequenceName = "audit_log_seq", allocationSize = 50)
     private Long id;
 
     private String action;
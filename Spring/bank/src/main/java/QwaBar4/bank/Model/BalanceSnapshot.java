@@ -0,0 +1,49 @@
+package QwaBar4.bank.Model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "balance_snapshots", indexes = {
+    @Index(name = "idx_balance_snapshots_account", columnList = "account_id, last_commit_seq")
+})
+public class BalanceSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal balance;
+
+    // Every posting of the account with a commit_seq up to this one is included in the balance
+    @Column(name = "last_commit_seq", nullable = false)
+    private Long lastCommitSeq;
+
+    @Column(name = "taken_at", nullable = false)
+    private LocalDateTime takenAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public BigDecimal getBalance() {
+        return balance;
+    }
+
+    public Long getLastCommitSeq() {
+        return lastCommitSeq;
+    }
+
+    public LocalDateTime getTakenAt() {
+        return takenAt;
+    }
+}
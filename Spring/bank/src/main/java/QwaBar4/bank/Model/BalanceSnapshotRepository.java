@@ -0,0 +1,27 @@
+package QwaBar4.bank.Model;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface BalanceSnapshotRepository extends JpaRepository<BalanceSnapshot, Long> {
+
+    Optional<BalanceSnapshot> findFirstByAccountIdOrderByLastCommitSeqDesc(Long accountId);
+
+    // Rolls every account with postings since its latest snapshot forward to the watermark
+    // in one statement: new balance = previous snapshot + postings in between.
+    @Modifying
+    @Query(value = "INSERT INTO balance_snapshots (account_id, balance, last_commit_seq, taken_at) " +
+                   "SELECT p.account_id, COALESCE(s.balance, 0) + SUM(p.amount), :watermark, now() " +
+                   "FROM journal_postings p " +
+                   "LEFT JOIN LATERAL (SELECT bs.balance, bs.last_commit_seq FROM balance_snapshots bs " +
+                   "    WHERE bs.account_id = p.account_id ORDER BY bs.last_commit_seq DESC LIMIT 1) s ON true " +
+                   "WHERE p.account_id IS NOT NULL AND p.commit_seq <= :watermark AND p.commit_seq > COALESCE(s.last_commit_seq, 0) " +
+                   "GROUP BY p.account_id, s.balance", nativeQuery = true)
+    int rollForwardTo(@Param("watermark") Long watermark);
+}
@@ -0,0 +1,89 @@
+package QwaBar4.bank.Model;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "journal_postings", indexes = {
+    @Index(name = "idx_journal_postings_account_commit", columnList = "account_id, commit_seq"),
+    @Index(name = "idx_journal_postings_movement", columnList = "movement_id")
+})
+public class JournalPosting {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "journal_postings_seq")
+    @SequenceGenerator(name = "journal_postings_seq", sequenceName = "journal_postings_seq", allocationSize = 50)
+    private Long id;
+
+    // Both postings of one movement share the movement id and their amounts sum to zero
+    @Column(name = "movement_id", nullable = false, length = 36, updatable = false)
+    private String movementId;
+
+    // Null for postings against a ledger outside the bank's customer accounts
+    @Column(name = "account_id", updatable = false)
+    private Long accountId;
+
+    @Column(nullable = false, length = 32, updatable = false)
+    private String ledger;
+
+    @Column(name = "entry_type", nullable = false, length = 32, updatable = false)
+    private String entryType;
+
+    // Signed from the account's point of view: credits are positive, debits negative
+    @Column(precision = 19, scale = 2, nullable = false, updatable = false)
+    private BigDecimal amount;
+
+    @Column(name = "posted_at", nullable = false, updatable = false)
+    private LocalDateTime postedAt;
+
+    // Commit order, assigned by the column default next_journal_commit_seq(). Unlike the
+    // pooled id, every posting with a lower value has committed by the time a snapshot
+    // watermark covers this one.
+    @Column(name = "commit_seq", insertable = false, updatable = false)
+    private Long commitSeq;
+
+    public JournalPosting() {}
+
+    public JournalPosting(String movementId, Long accountId, String ledger, String entryType,
+                          BigDecimal amount, LocalDateTime postedAt) {
+        this.movementId = movementId;
+        this.accountId = accountId;
+        this.ledger = ledger;
+        this.entryType = entryType;
+        this.amount = amount;
+        this.postedAt = postedAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getMovementId() {
+        return movementId;
+    }
+
+    public Long getAccountId() {
+        return accountId;
+    }
+
+    public String getLedger() {
+        return ledger;
+    }
+
+    public String getEntryType() {
+        return entryType;
+    }
+
+    public BigDecimal getAmount() {
+        return amount;
+    }
+
+    public LocalDateTime getPostedAt() {
+        return postedAt;
+    }
+
+    public Long getCommitSeq() {
+        return commitSeq;
+    }
+}
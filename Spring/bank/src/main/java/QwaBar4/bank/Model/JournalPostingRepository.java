@@ -0,0 +1,28 @@
+package QwaBar4.bank.Model;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+
+@Repository
+public interface JournalPostingRepository extends JpaRepository<JournalPosting, Long> {
+
+    @Query("SELECT COALESCE(SUM(p.amount), 0) FROM JournalPosting p WHERE p.accountId = :accountId AND p.commitSeq > :afterSeq")
+    BigDecimal sumForAccountAfter(@Param("accountId") Long accountId, @Param("afterSeq") Long afterSeq);
+
+    // Highest commit_seq handed out so far; postings up to it may still be uncommitted
+    @Query(value = "SELECT CASE WHEN is_called THEN last_value ELSE 0 END FROM journal_commit_seq", nativeQuery = true)
+    Long lastCommitSeq();
+
+    // Ids of the transactions open right now, as an xid8[] literal
+    @Query(value = "SELECT COALESCE(array_agg(x)::text, '{}') FROM pg_snapshot_xip(pg_current_snapshot()) x",
+           nativeQuery = true)
+    String openTransactionIds();
+
+    @Query(value = "SELECT count(*) FROM unnest(CAST(:xids AS xid8[])) x WHERE pg_xact_status(x) = 'in progress'",
+           nativeQuery = true)
+    long countInProgress(@Param("xids") String xids);
+}
@@ -0,0 +1,90 @@
+package QwaBar4.bank.Model;
+
+import QwaBar4.bank.Service.EncryptionService;
+import org.hibernate.annotations.Immutable;
+
+import java.util.Objects;
+
+/**
+ * An encrypted column value that is only decrypted when read. Values loaded from the
+ * database carry their ciphertext and decrypt it on the first get; values set by the
+ * application carry the plain text and are encrypted when written.
+ *
+ * Instances are never changed after creation apart from caching the other form, so
+ * Hibernate's dirty check can compare the loaded instance with itself instead of
+ * decrypting it; a setter replaces the instance.
+ */
+@Immutable
+public final class LazyEncryptedString {
+    private final EncryptionService encryptionService;
+    private volatile String plain;
+    private volatile String ciphertext;
+
+    private LazyEncryptedString(EncryptionService encryptionService, String plain, String ciphertext) {
+        this.encryptionService = encryptionService;
+        this.plain = plain;
+        this.ciphertext = ciphertext;
+    }
+
+    public static LazyEncryptedString of(String plain) {
+        return plain == null ? null : new LazyEncryptedString(null, plain, null);
+    }
+
+    public static LazyEncryptedString encrypted(String ciphertext, EncryptionService encryptionService) {
+        return ciphertext == null ? null : new LazyEncryptedString(encryptionService, null, ciphertext);
+    }
+
+    // Null-safe plain value, for entity getters
+    public static String value(LazyEncryptedString field) {
+        return field == null ? null : field.get();
+    }
+
+    public String get() {
+        String value = plain;
+        if (value == null) {
+            value = encryptionService.decrypt(ciphertext);
+            plain = value;
+        }
+        return value;
+    }
+
+    public boolean isDecrypted() {
+        return plain != null;
+    }
+
+    // The stored form, encrypting the plain text the first time it is needed
+    public String ciphertext(EncryptionService encryptionService) {
+        String value = ciphertext;
+        if (value == null) {
+            value = encryptionService.encrypt(plain);
+            ciphertext = value;
+        }
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LazyEncryptedString other)) {
+            return false;
+        }
+        // Same ciphertext is the same value; otherwise only the plain texts can tell
+        String mine = ciphertext;
+        if (mine != null && mine.equals(other.ciphertext)) {
+            return true;
+        }
+        return Objects.equals(get(), other.get());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(get());
+    }
+
+    @Override
+    public String toString() {
+        return "LazyEncryptedString[" + (isDecrypted() ? "decrypted" : "encrypted") + "]";
+    }
+}
@@ -8,7 +8,8 @@ import java.math.BigDecimal;
 @Table(name = "payments")
 public class PaymentModel {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payments_seq")
+    @SequenceGenerator(name = "payments_seq", sequenceName = "payments_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne
@@ -8,7 +8,8 @@ import java.math.BigDecimal;
 @Table(name = "payment_schedules")
 public class PaymentSchedule {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_schedules_seq")
+    @SequenceGenerator(name = "payment_schedules_seq", sequenceName = "payment_schedules_seq", allocationSize = 50)
     private Long id;
     
     private int paymentNumber;
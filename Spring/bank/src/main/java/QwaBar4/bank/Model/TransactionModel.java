@@ -5,15 +5,26 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "transactions")
+@Table(name = "transactions", indexes = {
+    @Index(name = "idx_transactions_source_timestamp_id", columnList = "source_account_number, timestamp, id"),
+    @Index(name = "idx_transactions_target_timestamp_id", columnList = "target_account_number, timestamp, id"),
+    @Index(name = "idx_transactions_type_timestamp_id", columnList = "type, timestamp, id"),
+    @Index(name = "idx_transactions_status_timestamp_id", columnList = "status, timestamp, id"),
+    @Index(name = "idx_transactions_amount", columnList = "amount"),
+    @Index(name = "idx_transactions_source_cp_timestamp_id", columnList = "source_counterparty_id, timestamp, id"),
+    @Index(name = "idx_transactions_target_cp_timestamp_id", columnList = "target_counterparty_id, timestamp, id")
+})
 public class TransactionModel {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "transactions_seq")
+    @SequenceGenerator(name = "transactions_seq", sequenceName = "transactions_seq", allocationSize = 50)
     private Long id;
 
     private String type;
 
+    // Partition key of the transactions table; every row must carry one
+    @Column(nullable = false)
     private LocalDateTime timestamp;
 
     @Column(precision = 19, scale = 2)
@@ -27,6 +38,13 @@ public class TransactionModel {
 
     @Column(name = "target_account_number")
     private String targetAccountNumber;
+
+    // anonymization_mappings ids; used instead of the strings above in reference storage mode
+    @Column(name = "source_counterparty_id")
+    private Long sourceCounterpartyId;
+
+    @Column(name = "target_counterparty_id")
+    private Long targetCounterpartyId;
     private String status;
 
     // Getters and Setters
@@ -86,6 +104,22 @@ public class TransactionModel {
         this.targetAccountNumber = targetAccountNumber; 
     }
     
+    public Long getSourceCounterpartyId() {
+        return sourceCounterpartyId;
+    }
+
+    public void setSourceCounterpartyId(Long sourceCounterpartyId) {
+        this.sourceCounterpartyId = sourceCounterpartyId;
+    }
+
+    public Long getTargetCounterpartyId() {
+        return targetCounterpartyId;
+    }
+
+    public void setTargetCounterpartyId(Long targetCounterpartyId) {
+        this.targetCounterpartyId = targetCounterpartyId;
+    }
+
     public String getStatus() {
         return status;
     }
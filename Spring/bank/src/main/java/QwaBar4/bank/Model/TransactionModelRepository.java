@@ -2,21 +2,54 @@ package QwaBar4.bank.Model;
 
 import jakarta.persistence.*;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
-public interface TransactionModelRepository extends JpaRepository<TransactionModel, Long> {
+public interface TransactionModelRepository extends JpaRepository<TransactionModel, Long>,
+        JpaSpecificationExecutor<TransactionModel>, TransactionModelRepositoryCustom {
 
-    @Query("SELECT t FROM TransactionModel t WHERE t.sourceAccountNumber = :sourceAccount OR t.targetAccountNumber = :targetAccount ORDER BY t.timestamp DESC")
-    List<TransactionModel> findBySourceAccountOrTargetAccountOrderByTimestampDesc(
-            @Param("sourceAccount") String sourceAccountNumber,
-            @Param("targetAccount") String targetAccountNumber
-    );
+    // One keyset page of an account's history, newest first. Each branch walks its own
+    // (account, timestamp, id) index from the cursor and stops after :limit rows, so the
+    // cost depends on the page size rather than on the length of the history. The plain
+    // timestamp bound is redundant with the row comparison but lets the planner prune
+    // monthly partitions newer than the cursor.
+    @Query(value = "SELECT * FROM (" +
+                   "(SELECT s.* FROM transactions s WHERE s.source_account_number = :account " +
+                   "   AND s.timestamp <= :beforeTimestamp AND (s.timestamp, s.id) < (:beforeTimestamp, :beforeId) " +
+                   "   ORDER BY s.timestamp DESC, s.id DESC LIMIT :limit) " +
+                   "UNION " +
+                   "(SELECT r.* FROM transactions r WHERE r.target_account_number = :account " +
+                   "   AND r.timestamp <= :beforeTimestamp AND (r.timestamp, r.id) < (:beforeTimestamp, :beforeId) " +
+                   "   ORDER BY r.timestamp DESC, r.id DESC LIMIT :limit)" +
+                   ") t ORDER BY t.timestamp DESC, t.id DESC LIMIT :limit", nativeQuery = true)
+    List<TransactionModel> findPageByAccountNumber(@Param("account") String accountNumber,
+                                                   @Param("beforeTimestamp") LocalDateTime beforeTimestamp,
+                                                   @Param("beforeId") Long beforeId,
+                                                   @Param("limit") int limit);
+
+    // Same page over the counterparty id columns of reference storage mode
+    @Query(value = "SELECT * FROM (" +
+                   "(SELECT s.* FROM transactions s WHERE s.source_counterparty_id = :counterparty " +
+                   "   AND s.timestamp <= :beforeTimestamp AND (s.timestamp, s.id) < (:beforeTimestamp, :beforeId) " +
+                   "   ORDER BY s.timestamp DESC, s.id DESC LIMIT :limit) " +
+                   "UNION " +
+                   "(SELECT r.* FROM transactions r WHERE r.target_counterparty_id = :counterparty " +
+                   "   AND r.timestamp <= :beforeTimestamp AND (r.timestamp, r.id) < (:beforeTimestamp, :beforeId) " +
+                   "   ORDER BY r.timestamp DESC, r.id DESC LIMIT :limit)" +
+                   ") t ORDER BY t.timestamp DESC, t.id DESC LIMIT :limit", nativeQuery = true)
+    List<TransactionModel> findPageByCounterpartyId(@Param("counterparty") Long counterpartyId,
+                                                    @Param("beforeTimestamp") LocalDateTime beforeTimestamp,
+                                                    @Param("beforeId") Long beforeId,
+                                                    @Param("limit") int limit);
 
     List<TransactionModel> findBySourceAccountNumber(String sourceAccountNumber);
 
@@ -27,6 +60,30 @@ public interface TransactionModelRepository extends JpaRepository<TransactionMod
            "ORDER BY t.timestamp DESC")
     List<TransactionModel> findByAccountNumbers(@Param("account") String accountNumber);
 
-    @Query("SELECT COALESCE(SUM(t.amount), 0) FROM TransactionModel t WHERE t.sourceAccountNumber = :sourceAccount AND t.timestamp >= :startOfDay")
-    BigDecimal getDailyTransferTotal(@Param("sourceAccount") String sourceAccount, @Param("startOfDay") LocalDateTime startOfDay);
+    @Query("SELECT t FROM TransactionModel t WHERE " +
+           "t.sourceCounterpartyId = :counterparty OR t.targetCounterpartyId = :counterparty " +
+           "ORDER BY t.timestamp DESC")
+    List<TransactionModel> findByCounterpartyId(@Param("counterparty") Long counterpartyId);
+
+    // Forward-only cursor over an account's history; must be consumed inside a transaction
+    // so the driver fetches rows in batches of the fetch size instead of all at once.
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT t FROM TransactionModel t WHERE " +
+           "t.sourceAccountNumber = :account OR t.targetAccountNumber = :account " +
+           "ORDER BY t.timestamp DESC, t.id DESC")
+    Stream<TransactionModel> streamByAccountNumber(@Param("account") String accountNumber);
+
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"),
+        @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    @Query("SELECT t FROM TransactionModel t WHERE " +
+           "t.sourceCounterpartyId = :counterparty OR t.targetCounterpartyId = :counterparty " +
+           "ORDER BY t.timestamp DESC, t.id DESC")
+    Stream<TransactionModel> streamByCounterpartyId(@Param("counterparty") Long counterpartyId);
 }
@@ -0,0 +1,11 @@
+package QwaBar4.bank.Model;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface TransactionModelRepositoryCustom {
+    void batchInsert(List<TransactionModel> transactions);
+
+    List<TransactionModel> findNewestFirst(Specification<TransactionModel> spec, int limit);
+}
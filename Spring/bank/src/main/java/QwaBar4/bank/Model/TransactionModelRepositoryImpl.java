@@ -0,0 +1,44 @@
+package QwaBar4.bank.Model;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public class TransactionModelRepositoryImpl implements TransactionModelRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Ids come from the pooled-lo sequence without a round trip per row, so Hibernate
+    // sends the inserts as JDBC batches of hibernate.jdbc.batch_size when flushing.
+    @Override
+    public void batchInsert(List<TransactionModel> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        transactions.forEach(entityManager::persist);
+        entityManager.flush();
+    }
+
+    // Newest-first, limited, and without the count query a Page would issue
+    @Override
+    public List<TransactionModel> findNewestFirst(Specification<TransactionModel> spec, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<TransactionModel> query = cb.createQuery(TransactionModel.class);
+        Root<TransactionModel> root = query.from(TransactionModel.class);
+
+        Predicate predicate = spec.toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(cb.desc(root.get("timestamp")), cb.desc(root.get("id")));
+
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+}
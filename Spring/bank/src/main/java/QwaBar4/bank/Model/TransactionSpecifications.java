@@ -0,0 +1,78 @@
+package QwaBar4.bank.Model;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Search predicates over the ledger. Account numbers are the anonymized values stored in
+ * the rows. Every predicate is served by an index on transactions, so any combination
+ * runs as index scans.
+ */
+public final class TransactionSpecifications {
+
+    private TransactionSpecifications() {
+    }
+
+    public static Specification<TransactionModel> involvesAccount(String account) {
+        return (root, query, cb) -> cb.or(
+                cb.equal(root.get("sourceAccountNumber"), account),
+                cb.equal(root.get("targetAccountNumber"), account));
+    }
+
+    // Rows between the two accounts, in either direction
+    public static Specification<TransactionModel> betweenAccounts(String account, String counterparty) {
+        return (root, query, cb) -> cb.or(
+                cb.and(cb.equal(root.get("sourceAccountNumber"), account),
+                       cb.equal(root.get("targetAccountNumber"), counterparty)),
+                cb.and(cb.equal(root.get("sourceAccountNumber"), counterparty),
+                       cb.equal(root.get("targetAccountNumber"), account)));
+    }
+
+    public static Specification<TransactionModel> involvesCounterparty(Long counterpartyId) {
+        return (root, query, cb) -> cb.or(
+                cb.equal(root.get("sourceCounterpartyId"), counterpartyId),
+                cb.equal(root.get("targetCounterpartyId"), counterpartyId));
+    }
+
+    public static Specification<TransactionModel> betweenCounterparties(Long accountId, Long counterpartyId) {
+        return (root, query, cb) -> cb.or(
+                cb.and(cb.equal(root.get("sourceCounterpartyId"), accountId),
+                       cb.equal(root.get("targetCounterpartyId"), counterpartyId)),
+                cb.and(cb.equal(root.get("sourceCounterpartyId"), counterpartyId),
+                       cb.equal(root.get("targetCounterpartyId"), accountId)));
+    }
+
+    public static Specification<TransactionModel> hasType(String type) {
+        return (root, query, cb) -> cb.equal(root.get("type"), type);
+    }
+
+    public static Specification<TransactionModel> hasStatus(String status) {
+        return (root, query, cb) -> cb.equal(root.get("status"), status);
+    }
+
+    public static Specification<TransactionModel> amountAtLeast(BigDecimal min) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("amount"), min);
+    }
+
+    public static Specification<TransactionModel> amountAtMost(BigDecimal max) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("amount"), max);
+    }
+
+    public static Specification<TransactionModel> onOrAfter(LocalDateTime from) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("timestamp"), from);
+    }
+
+    public static Specification<TransactionModel> before(LocalDateTime to) {
+        return (root, query, cb) -> cb.lessThan(root.get("timestamp"), to);
+    }
+
+    // Keyset position for newest-first paging: rows strictly older than (timestamp, id)
+    public static Specification<TransactionModel> olderThan(LocalDateTime timestamp, long id) {
+        return (root, query, cb) -> cb.and(
+                cb.lessThanOrEqualTo(root.get("timestamp"), timestamp),
+                cb.or(cb.lessThan(root.get("timestamp"), timestamp),
+                      cb.lessThan(root.get("id"), id)));
+    }
+}
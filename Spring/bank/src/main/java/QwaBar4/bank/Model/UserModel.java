@@ -4,7 +4,7 @@ import jakarta.persistence.*;
 import org.hibernate.annotations.DynamicUpdate;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.time.LocalDate;
-import QwaBar4.bank.Service.EncryptionConverter;
+import QwaBar4.bank.Service.LazyEncryptionConverter;
 
 import java.util.*;
 
@@ -35,25 +35,27 @@ public class UserModel {
     @Column(name = "active", nullable = false)
     private boolean active;
 
+    // Personal data is decrypted on first access, so loads that only need the login
+    // fields (every authenticated request) do no decryption
     @Column(nullable = true)
-    @Convert(converter = EncryptionConverter.class)
-    private String firstName;
+    @Convert(converter = LazyEncryptionConverter.class)
+    private LazyEncryptedString firstName;
 
     @Column(nullable = true)
-    @Convert(converter = EncryptionConverter.class)
-    private String lastName;
+    @Convert(converter = LazyEncryptionConverter.class)
+    private LazyEncryptedString lastName;
 
     @Column(nullable = true)
-    @Convert(converter = EncryptionConverter.class)
-    private String middleName;
+    @Convert(converter = LazyEncryptionConverter.class)
+    private LazyEncryptedString middleName;
 
     @Column(nullable = true)
-    @Convert(converter = EncryptionConverter.class)
-    private String passportSeries;
+    @Convert(converter = LazyEncryptionConverter.class)
+    private LazyEncryptedString passportSeries;
 
     @Column(nullable = true)
-    @Convert(converter = EncryptionConverter.class)
-    private String passportNumber;
+    @Convert(converter = LazyEncryptionConverter.class)
+    private LazyEncryptedString passportNumber;
 
     @Column(nullable = true)
     private LocalDate dateOfBirth;
@@ -116,43 +118,43 @@ public class UserModel {
     }
 
     public String getFirstName() {
-        return firstName;
+        return LazyEncryptedString.value(firstName);
     }
 
     public void setFirstName(String firstName) {
-        this.firstName = firstName;
+        this.firstName = LazyEncryptedString.of(firstName);
     }
 
     public String getLastName() {
-        return lastName;
+        return LazyEncryptedString.value(lastName);
     }
 
     public void setLastName(String lastName) {
-        this.lastName = lastName;
+        this.lastName = LazyEncryptedString.of(lastName);
     }
 
     public String getMiddleName() {
-        return middleName;
+        return LazyEncryptedString.value(middleName);
     }
 
     public void setMiddleName(String middleName) {
-        this.middleName = middleName;
+        this.middleName = LazyEncryptedString.of(middleName);
     }
 
     public String getPassportSeries() {
-        return passportSeries;
+        return LazyEncryptedString.value(passportSeries);
     }
 
     public void setPassportSeries(String passportSeries) {
-        this.passportSeries = passportSeries;
+        this.passportSeries = LazyEncryptedString.of(passportSeries);
     }
 
     public String getPassportNumber() {
-        return passportNumber;
+        return LazyEncryptedString.value(passportNumber);
     }
 
     public void setPassportNumber(String passportNumber) {
-        this.passportNumber = passportNumber;
+        this.passportNumber = LazyEncryptedString.of(passportNumber);
     }
 
     public LocalDate getDateOfBirth() {
@@ -1,52 +1,94 @@
 package QwaBar4.bank.Service;
 
-import org.springframework.stereotype.Service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Cipher;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.DrbgParameters;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
 import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * AES-GCM with a random 96-bit IV per value, stored in front of the ciphertext.
+ *
+ * Each thread keeps its own Cipher and re-initialises it per call, which skips the provider
+ * lookup of Cipher.getInstance; a GCM cipher refuses to encrypt twice with the same key and
+ * IV, so reuse cannot repeat an IV. IVs come from one shared DRBG that is reseeded from the
+ * system entropy source every RESEED_INTERVAL IVs.
+ *
+ * When EncryptionKeyring is enabled, values are written as "e1:<data key id>:<Base64>"
+ * with the header authenticated as additional data, and encrypted with the keyring's
+ * active data key. Values without the header are the original format under
+ * ENCRYPTION_SECRET_KEY and are still read; needsReEncryption tells which values the
+ * re-encryption job should rewrite.
+ */
 @Service
 public class AESEncryptionService implements EncryptionService {
     private static final Logger logger = LoggerFactory.getLogger(AESEncryptionService.class);
     private static final String ALGORITHM = "AES/GCM/NoPadding";
-    private static final int TAG_LENGTH_BIT = 128; 
+    private static final int TAG_LENGTH_BIT = 128;
     private static final int IV_LENGTH_BYTE = 12;
+    private static final long RESEED_INTERVAL = 1L << 20;
+    // ':' never occurs in Base64, so the header cannot be confused with a legacy value
+    private static final String ENVELOPE_PREFIX = "e1:";
+
     private final SecretKey secretKey;
+    private final EncryptionKeyring keyring;
+    private final SecureRandom ivSource;
+    private final AtomicLong ivsIssued = new AtomicLong();
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(ALGORITHM);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES/GCM is not available", e);
+        }
+    });
+
+    @Autowired
+    public AESEncryptionService(EncryptionKeyring keyring) {
+        this(System.getenv("ENCRYPTION_SECRET_KEY"), keyring);
+    }
+
+    // Single-key service that only reads and writes the original format
+    public AESEncryptionService(String key) {
+        this(key, null);
+    }
 
-    public AESEncryptionService() {
-        String envKey = System.getenv("ENCRYPTION_SECRET_KEY");
-        if (envKey == null || envKey.length() != 32) {
+    private AESEncryptionService(String key, EncryptionKeyring keyring) {
+        if (key == null || key.length() != 32) {
             throw new IllegalStateException("Invalid encryption key configuration");
         }
-        this.secretKey = new SecretKeySpec(envKey.getBytes(), "AES");
+        this.secretKey = new SecretKeySpec(key.getBytes(), "AES");
+        this.keyring = keyring;
+        try {
+            this.ivSource = SecureRandom.getInstance("DRBG",
+                    DrbgParameters.instantiation(256, DrbgParameters.Capability.RESEED_ONLY, null));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("No DRBG available for encryption IVs", e);
+        }
     }
-    
+
     @Override
     public String encrypt(String data) {
         if (data == null) return null;
-        
+
         try {
-            byte[] iv = new byte[IV_LENGTH_BYTE];
-            SecureRandom secureRandom = new SecureRandom();
-            secureRandom.nextBytes(iv);
-            
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            GCMParameterSpec parameterSpec = new GCMParameterSpec(TAG_LENGTH_BIT, iv);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey, parameterSpec);
-            
-            byte[] encryptedBytes = cipher.doFinal(data.getBytes());
-            byte[] combined = new byte[iv.length + encryptedBytes.length];
-            System.arraycopy(iv, 0, combined, 0, iv.length);
-            System.arraycopy(encryptedBytes, 0, combined, iv.length, encryptedBytes.length);
-            
-            return Base64.getEncoder().encodeToString(combined);
+            byte[] plain = data.getBytes(StandardCharsets.UTF_8);
+            if (!envelopeEnabled()) {
+                return Base64.getEncoder().encodeToString(seal(secretKey, null, plain));
+            }
+            EncryptionKeyring.DataKey dataKey = keyring.active();
+            String header = ENVELOPE_PREFIX + dataKey.getId() + ":";
+            byte[] aad = header.getBytes(StandardCharsets.US_ASCII);
+            return header + Base64.getEncoder().encodeToString(seal(dataKey.getKey(), aad, plain));
         } catch (Exception e) {
             logger.error("Encryption failed", e);
             throw new RuntimeException("Encryption operation failed", e);
@@ -56,28 +98,70 @@ public class AESEncryptionService implements EncryptionService {
     @Override
     public String decrypt(String encryptedData) {
         if (encryptedData == null) return null;
-        
+
         try {
-            byte[] combined = Base64.getDecoder().decode(encryptedData);
-            
-            if (combined.length < IV_LENGTH_BYTE + 1) {
+            if (!encryptedData.startsWith(ENVELOPE_PREFIX)) {
+                return open(secretKey, null, Base64.getDecoder().decode(encryptedData));
+            }
+            int separator = encryptedData.indexOf(':', ENVELOPE_PREFIX.length());
+            if (separator < 0 || keyring == null) {
                 throw new IllegalArgumentException("Invalid encrypted data format");
             }
-            
-            byte[] iv = new byte[IV_LENGTH_BYTE];
-            System.arraycopy(combined, 0, iv, 0, iv.length);
-            
-            byte[] cipherBytes = new byte[combined.length - IV_LENGTH_BYTE];
-            System.arraycopy(combined, IV_LENGTH_BYTE, cipherBytes, 0, cipherBytes.length);
-            
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            GCMParameterSpec parameterSpec = new GCMParameterSpec(TAG_LENGTH_BIT, iv);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, parameterSpec);
-            
-            return new String(cipher.doFinal(cipherBytes));
+            int keyId = Integer.parseInt(encryptedData.substring(ENVELOPE_PREFIX.length(), separator));
+            byte[] aad = encryptedData.substring(0, separator + 1).getBytes(StandardCharsets.US_ASCII);
+            return open(keyring.key(keyId), aad, Base64.getDecoder().decode(encryptedData.substring(separator + 1)));
         } catch (Exception e) {
             logger.error("Decryption failed for data length: {}", encryptedData.length(), e);
             throw new RuntimeException("Decryption operation failed", e);
         }
     }
+
+    // True when the value is not encrypted with the active data key
+    @Override
+    public boolean needsReEncryption(String encryptedData) {
+        if (encryptedData == null || !envelopeEnabled()) {
+            return false;
+        }
+        return !encryptedData.startsWith(ENVELOPE_PREFIX + keyring.active().getId() + ":");
+    }
+
+    private boolean envelopeEnabled() {
+        return keyring != null && keyring.isEnabled();
+    }
+
+    // IV followed by ciphertext and tag, written straight into one buffer
+    private byte[] seal(SecretKey key, byte[] aad, byte[] plain) throws Exception {
+        byte[] iv = nextIv();
+        Cipher cipher = ciphers.get();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BIT, iv));
+        if (aad != null) {
+            cipher.updateAAD(aad);
+        }
+        byte[] combined = new byte[IV_LENGTH_BYTE + cipher.getOutputSize(plain.length)];
+        System.arraycopy(iv, 0, combined, 0, IV_LENGTH_BYTE);
+        cipher.doFinal(plain, 0, plain.length, combined, IV_LENGTH_BYTE);
+        return combined;
+    }
+
+    private String open(SecretKey key, byte[] aad, byte[] combined) throws Exception {
+        if (combined.length < IV_LENGTH_BYTE + 1) {
+            throw new IllegalArgumentException("Invalid encrypted data format");
+        }
+        Cipher cipher = ciphers.get();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BIT, combined, 0, IV_LENGTH_BYTE));
+        if (aad != null) {
+            cipher.updateAAD(aad);
+        }
+        byte[] plain = cipher.doFinal(combined, IV_LENGTH_BYTE, combined.length - IV_LENGTH_BYTE);
+        return new String(plain, StandardCharsets.UTF_8);
+    }
+
+    private byte[] nextIv() {
+        if (ivsIssued.incrementAndGet() % RESEED_INTERVAL == 0) {
+            ivSource.reseed();
+        }
+        byte[] iv = new byte[IV_LENGTH_BYTE];
+        ivSource.nextBytes(iv);
+        return iv;
+    }
 }
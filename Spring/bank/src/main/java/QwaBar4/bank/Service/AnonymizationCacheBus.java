@@ -0,0 +1,111 @@
+package QwaBar4.bank.Service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Spreads AnonymizationService cache invalidations to the other instances over a Redis
+ * pub/sub channel. A message is "<instance>|*" to clear everything or "<instance>|token,..."
+ * for individual tokens; instances ignore their own messages.
+ */
+@Service
+@ConditionalOnProperty(name = "bank.anonymization.cache.invalidation", havingValue = "redis")
+public class AnonymizationCacheBus implements MessageListener {
+    private static final Logger logger = LoggerFactory.getLogger(AnonymizationCacheBus.class);
+    private static final String ALL = "*";
+
+    private final AnonymizationService anonymizationService;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisConnectionFactory connectionFactory;
+    private final ChannelTopic topic;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final LongAdder received = new LongAdder();
+
+    private RedisMessageListenerContainer container;
+
+    @Autowired
+    public AnonymizationCacheBus(AnonymizationService anonymizationService,
+                                 StringRedisTemplate redisTemplate,
+                                 RedisConnectionFactory connectionFactory,
+                                 @Value("${bank.anonymization.cache.channel:bank:anonymization:invalidate}") String channel) {
+        this.anonymizationService = anonymizationService;
+        this.redisTemplate = redisTemplate;
+        this.connectionFactory = connectionFactory;
+        this.topic = new ChannelTopic(channel);
+    }
+
+    @PostConstruct
+    public void subscribe() {
+        container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(this, topic);
+        container.afterPropertiesSet();
+        container.start();
+    }
+
+    @PreDestroy
+    public void unsubscribe() throws Exception {
+        if (container != null) {
+            container.destroy();
+        }
+    }
+
+    public void publish(Collection<String> anonymizedValues) {
+        if (!anonymizedValues.isEmpty()) {
+            send(String.join(",", anonymizedValues));
+        }
+    }
+
+    public void publishAll() {
+        send(ALL);
+    }
+
+    private void send(String payload) {
+        try {
+            redisTemplate.convertAndSend(topic.getTopic(), instanceId + "|" + payload);
+        } catch (RuntimeException e) {
+            // Other instances fall back to their cache TTL
+            logger.warn("Could not publish anonymization cache invalidation", e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf('|');
+        if (separator < 0 || body.substring(0, separator).equals(instanceId)) {
+            return;
+        }
+        received.increment();
+        String payload = body.substring(separator + 1);
+        if (ALL.equals(payload)) {
+            anonymizationService.evictAll();
+        } else {
+            List<String> tokens = Arrays.asList(payload.split(","));
+            anonymizationService.evict(tokens);
+        }
+    }
+
+    public long getReceived() {
+        return received.sum();
+    }
+}
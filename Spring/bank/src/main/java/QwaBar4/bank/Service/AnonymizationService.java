@@ -2,17 +2,91 @@ package QwaBar4.bank.Service;
 
 import QwaBar4.bank.Model.AnonymizedMapping;
 import QwaBar4.bank.Model.AnonymizedMappingRepository;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Iterables;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
 import com.google.common.hash.Hashing;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Maps account numbers and usernames to stable anonymized tokens and back.
+ *
+ * Mapping rows never change once written, so lookups in both directions are cached in
+ * memory: by original hash for anonymize, by token for the decrypted original, and by id
+ * for ledger rows in reference storage mode. Entries are only cached once the transaction
+ * that read or created them has committed, so a rolled-back mapping is never served.
+ * Repairs made directly in the database must be followed by invalidate, which also
+ * reaches the other instances when cluster invalidation is enabled.
+ *
+ * The *All methods resolve a whole page of values with one IN query per 1000 values, and
+ * decrypt uncached originals in parallel on a small bounded pool.
+ *
+ * With bank.anonymization.token-mode=hmac, new tokens come from KeyedTokenGenerator
+ * instead of a random value, so anonymize needs no lookup first: the mapping row is
+ * inserted just before the caller's transaction commits, once per value however often it
+ * was anonymized, and commits or rolls back together with the rows that use the token.
+ * Values mapped before the current key (random tokens or an older key version) keep
+ * their token. A Bloom filter of their hashes, loaded once at startup, tells which
+ * values need a lookup. A second one holds the values already mapped under the current
+ * key, loaded from the table and added to as this instance writes, so a value evicted
+ * from the cache is looked up again instead of inserted again. All instances must switch
+ * modes and key versions together.
+ *
+ * Hashes are stored as 32-byte bytea. While bank.anonymization.hash-storage=dual, rows
+ * are also written with the old hex column and lookups that miss on the binary column
+ * fall back to it, so rows not yet backfilled by migrate_mapping_digests.sql are still
+ * found. Switch to binary once the backfill has finished.
+ */
 @Service
 public class AnonymizationService {
+    private static final Logger logger = LoggerFactory.getLogger(AnonymizationService.class);
     private static final String ANONYMIZATION_SALT = System.getenv("ANON_SALT");
+    private static final int IN_CHUNK_SIZE = 1000;
+    // Below this many decryptions the hand-off to the pool costs more than it saves
+    private static final int PARALLEL_DECRYPT_THRESHOLD = 16;
+    private static final int MAX_CREATE_ATTEMPTS = 3;
+    private static final int FILTER_PAGE_SIZE = 10000;
+    private static final long WRITTEN_FILTER_CAPACITY = 1_000_000;
 
     @Autowired
     private AnonymizedMappingRepository mappingRepo;
@@ -20,41 +94,699 @@ public class AnonymizationService {
     @Autowired
     private EncryptionService encryptionService;
 
+    @Autowired
+    private ObjectProvider<AnonymizationCacheBus> cacheBus;
+
+    @Autowired
+    private KeyedTokenGenerator keyedTokens;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${bank.anonymization.cache.maximum-size:100000}")
+    private long cacheMaximumSize;
+
+    @Value("${bank.anonymization.cache.ttl-seconds:3600}")
+    private long cacheTtlSeconds;
+
+    @Value("${bank.anonymization.decrypt-threads:4}")
+    private int decryptThreads;
+
+    @Value("${bank.anonymization.hash-storage:dual}")
+    private String hashStorage;
+
+    // dual: hex hashes are still written and read as a fallback
+    private boolean dualHashes;
+
+    private ThreadPoolExecutor decryptPool;
+
+    // hmac mode: hashes of values mapped before the current key; null until loaded
+    private volatile BloomFilter<byte[]> olderMappings;
+    // hmac mode: hashes of values mapped under the current key. Once it holds more than it
+    // was sized for it is reloaded from the table into a larger one; until then it keeps
+    // answering, with more false positives, each costing a lookup.
+    private volatile BloomFilter<byte[]> writtenMappings;
+    private volatile long writtenCapacity = WRITTEN_FILTER_CAPACITY;
+    // The filter being reloaded, which new writes also go to so the swap loses none
+    private volatile BloomFilter<byte[]> reloadingMappings;
+    private final AtomicBoolean writtenReloadScheduled = new AtomicBoolean();
+    private ScheduledExecutorService filterLoader;
+    private TransactionTemplate newTransaction;
+    private final LongAdder keyedTokensIssued = new LongAdder();
+    private final LongAdder mappingInserts = new LongAdder();
+
+    /**
+     * Mapping rows for the keyed tokens issued in one transaction, inserted in one statement
+     * before it commits. Kept as the synchronization itself rather than a bound resource, so
+     * a unit rolled back to a savepoint by LedgerWriter, which also drops the
+     * synchronizations it registered, takes its rows with it.
+     */
+    private final class KeyedMappingInserts implements TransactionSynchronization {
+        // original hash -> original
+        private final Map<String, String> originalsByHash = new LinkedHashMap<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            List<AnonymizedMapping> inserted = insertKeyedMappings(originalsByHash);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    markWritten(originalsByHash.keySet());
+                    inserted.forEach(m -> cacheMapping(m, originalsByHash.get(m.getOriginalHash())));
+                }
+            });
+        }
+    }
+
+    // original hash -> mapping
+    private Cache<String, AnonymizedMapping> byHash;
+    // mapping id -> mapping
+    private Cache<Long, AnonymizedMapping> byId;
+    // token -> decrypted original
+    private Cache<String, String> originals;
+
+    @PostConstruct
+    public void init() {
+        byHash = newCache();
+        byId = newCache();
+        originals = newCache();
+        dualHashes = !"binary".equalsIgnoreCase(hashStorage.trim());
+
+        AtomicInteger threadCount = new AtomicInteger();
+        int threads = Math.max(1, decryptThreads);
+        // A full queue makes the caller decrypt on its own thread instead of piling up work
+        decryptPool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(IN_CHUNK_SIZE),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "anonymization-decrypt-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        if (keyedTokens.isEnabled()) {
+            newTransaction = new TransactionTemplate(transactionManager);
+            newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+            writtenMappings = newWrittenFilter(WRITTEN_FILTER_CAPACITY);
+            filterLoader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "anonymization-filter-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            filterLoader.execute(this::loadOlderMappings);
+            writtenReloadScheduled.set(true);
+            filterLoader.execute(this::reloadWrittenMappings);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        decryptPool.shutdown();
+        if (filterLoader != null) {
+            filterLoader.shutdownNow();
+        }
+    }
+
+    private <K, V> Cache<K, V> newCache() {
+        return CacheBuilder.newBuilder()
+                .maximumSize(cacheMaximumSize)
+                .expireAfterAccess(Duration.ofSeconds(cacheTtlSeconds))
+                .recordStats()
+                .build();
+    }
+
+    // Runs on the primary even when called outside a transaction, so a mapping created
+    // moments ago is never missed on a lagging replica and duplicated.
+    @Transactional
     public String anonymize(String original) {
+        if (keyedTokens.isEnabled()) {
+            return issueKeyedToken(original);
+        }
+        AnonymizedMapping mapping = anonymizeMapping(original);
+        return mapping != null ? mapping.getAnonymizedValue() : null;
+    }
+
+    // The mapping row itself, created if needed; its id is the counterparty reference
+    @Transactional
+    public AnonymizedMapping anonymizeMapping(String original) {
         if (original == null) {
             return null;
         }
         String hash = generateHash(original);
-        return mappingRepo.findByOriginalHash(hash)
-                .map(AnonymizedMapping::getAnonymizedValue)
-                .orElseGet(() -> createNewMapping(original, hash));
+        AnonymizedMapping cached = byHash.getIfPresent(hash);
+        if (cached != null) {
+            return cached;
+        }
+        Optional<AnonymizedMapping> existing = findByHash(hash);
+        if (existing.isPresent()) {
+            cacheAfterCommit(existing.get(), original);
+            return existing.get();
+        }
+        return createMappings(Map.of(hash, original)).get(hash);
     }
 
-    private String createNewMapping(String original, String hash) {
-        String anonymized = "USER-" + UUID.randomUUID().toString().substring(0, 8);
-        String encrypted = encryptionService.encrypt(original);
+    // Existing token for a value without creating a mapping; safe on read-only paths
+    public Optional<String> findAnonymized(String original) {
+        if (keyedTokens.isEnabled() && original != null) {
+            String hash = generateHash(original);
+            Optional<AnonymizedMapping> older = findOlderMapping(hash, original);
+            // Any token issued for this value under the current key is this one
+            return Optional.of(older.map(AnonymizedMapping::getAnonymizedValue)
+                    .orElseGet(() -> keyedTokens.token(original)));
+        }
+        return findMapping(original).map(AnonymizedMapping::getAnonymizedValue);
+    }
 
-        AnonymizedMapping mapping = new AnonymizedMapping();
-        mapping.setOriginalHash(hash);
-        mapping.setAnonymizedValue(anonymized);
-        mapping.setEncryptedOriginal(encrypted);
-        mappingRepo.save(mapping);
+    private String issueKeyedToken(String original) {
+        if (original == null) {
+            return null;
+        }
+        String hash = generateHash(original);
+        Optional<AnonymizedMapping> older = findOlderMapping(hash, original);
+        if (older.isPresent()) {
+            return older.get().getAnonymizedValue();
+        }
+
+        String token = keyedTokens.token(original);
+        keyedTokensIssued.increment();
+        // Derived from the value itself, so safe to cache before anything commits
+        originals.put(token, original);
+
+        // Without a writable transaction to join, the row is written right away on its own
+        if (!TransactionSynchronizationManager.isActualTransactionActive()
+                || TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            List<AnonymizedMapping> inserted = newTransaction.execute(status ->
+                    insertKeyedMappings(Map.of(hash, original)));
+            markWritten(Set.of(hash));
+            if (inserted != null) {
+                inserted.forEach(m -> cacheMapping(m, original));
+            }
+            return token;
+        }
+        keyedMappingInserts().originalsByHash.putIfAbsent(hash, original);
+        return token;
+    }
 
-        return anonymized;
+    // The transaction's pending inserts, registered on first use
+    private KeyedMappingInserts keyedMappingInserts() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof KeyedMappingInserts inserts) {
+                return inserts;
+            }
+        }
+        KeyedMappingInserts inserts = new KeyedMappingInserts();
+        TransactionSynchronizationManager.registerSynchronization(inserts);
+        return inserts;
+    }
+
+    // Rows another transaction or instance already wrote are skipped; their token is the same
+    private List<AnonymizedMapping> insertKeyedMappings(Map<String, String> originalsByHash) {
+        List<AnonymizedMapping> inserted = new ArrayList<>();
+        for (List<String> chunk : Iterables.partition(new ArrayList<>(originalsByHash.keySet()), IN_CHUNK_SIZE)) {
+            String[] hashes = chunk.toArray(new String[0]);
+            String[] tokens = new String[hashes.length];
+            String[] encrypted = new String[hashes.length];
+            for (int i = 0; i < hashes.length; i++) {
+                String original = originalsByHash.get(hashes[i]);
+                tokens[i] = keyedTokens.token(original);
+                encrypted[i] = encryptionService.encrypt(original);
+            }
+            inserted.addAll(mappingRepo.insertIfAbsent(hashes, tokens, encrypted, dualHashes));
+        }
+        mappingInserts.add(inserted.size());
+        return inserted;
+    }
+
+    private void markWritten(Collection<String> hashes) {
+        BloomFilter<byte[]> filter = writtenMappings;
+        BloomFilter<byte[]> reloading = reloadingMappings;
+        for (String hash : hashes) {
+            byte[] digest = digest(hash);
+            filter.put(digest);
+            if (reloading != null) {
+                reloading.put(digest);
+            }
+        }
+        if (filter.approximateElementCount() > writtenCapacity && !filterLoader.isShutdown()
+                && writtenReloadScheduled.compareAndSet(false, true)) {
+            filterLoader.execute(this::reloadWrittenMappings);
+        }
+    }
+
+    private static BloomFilter<byte[]> newWrittenFilter(long capacity) {
+        return BloomFilter.create(Funnels.byteArrayFunnel(), capacity, 0.001);
+    }
+
+    // Rows committed behind the scan were added by markWritten, which runs after commit
+    private void reloadWrittenMappings() {
+        try {
+            String currentTokens = keyedTokens.currentPrefix() + "%";
+            long capacity = Math.max(WRITTEN_FILTER_CAPACITY, mappingRepo.countByAnonymizedValueLike(currentTokens) * 2);
+            BloomFilter<byte[]> filter = newWrittenFilter(capacity);
+            reloadingMappings = filter;
+            long afterId = Long.MIN_VALUE;
+            List<Object[]> page;
+            do {
+                page = mappingRepo.findHashesLike(currentTokens, afterId, PageRequest.of(0, FILTER_PAGE_SIZE));
+                for (Object[] row : page) {
+                    afterId = (Long) row[0];
+                    filter.put(row[1] != null ? (byte[]) row[1] : digest((String) row[2]));
+                }
+            } while (page.size() == FILTER_PAGE_SIZE);
+            writtenCapacity = capacity;
+            writtenMappings = filter;
+            writtenReloadScheduled.set(false);
+            logger.info("Loaded {} anonymization mappings under the current token key", filter.approximateElementCount());
+        } catch (RuntimeException e) {
+            // The current filter stays in use meanwhile
+            logger.warn("Could not load current-key anonymization mappings, retrying", e);
+            filterLoader.schedule(this::reloadWrittenMappings, 30, TimeUnit.SECONDS);
+        } finally {
+            reloadingMappings = null;
+        }
+    }
+
+    // Cached mapping, or the row of a value mapped before the current key or already
+    // written under it; empty when the value's token is its keyed token and no row exists
+    private Optional<AnonymizedMapping> findOlderMapping(String hash, String original) {
+        AnonymizedMapping cached = byHash.getIfPresent(hash);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        BloomFilter<byte[]> older = olderMappings;
+        BloomFilter<byte[]> written = writtenMappings;
+        byte[] digest = digest(hash);
+        if (older != null && !older.mightContain(digest) && (written == null || !written.mightContain(digest))) {
+            return Optional.empty();
+        }
+        Optional<AnonymizedMapping> existing = findByHash(hash);
+        existing.ifPresent(m -> cacheAfterCommit(m, original));
+        return existing;
+    }
+
+    private void loadOlderMappings() {
+        try {
+            BloomFilter<byte[]> filter = BloomFilter.create(
+                    Funnels.byteArrayFunnel(), Math.max(mappingRepo.count(), 1000), 0.001);
+            String currentTokens = keyedTokens.currentPrefix() + "%";
+            long afterId = Long.MIN_VALUE;
+            List<Object[]> page;
+            do {
+                page = mappingRepo.findHashesNotLike(currentTokens, afterId, PageRequest.of(0, FILTER_PAGE_SIZE));
+                for (Object[] row : page) {
+                    afterId = (Long) row[0];
+                    filter.put(row[1] != null ? (byte[]) row[1] : digest((String) row[2]));
+                }
+            } while (page.size() == FILTER_PAGE_SIZE);
+            olderMappings = filter;
+            logger.info("Loaded {} anonymization mappings that predate the current token key", filter.approximateElementCount());
+        } catch (RuntimeException e) {
+            // Until the filter loads every value is looked up, which is slower but correct
+            logger.warn("Could not load older anonymization mappings, retrying", e);
+            filterLoader.schedule(this::loadOlderMappings, 30, TimeUnit.SECONDS);
+        }
+    }
+
+    public Optional<AnonymizedMapping> findMapping(String original) {
+        if (original == null) {
+            return Optional.empty();
+        }
+        String hash = generateHash(original);
+        AnonymizedMapping cached = byHash.getIfPresent(hash);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<AnonymizedMapping> mapping = findByHash(hash);
+        mapping.ifPresent(m -> cacheAfterCommit(m, original));
+        return mapping;
+    }
+
+    // Tokens for many values; see anonymizeMappings
+    @Transactional
+    public Map<String, String> anonymizeAll(Collection<String> originalValues) {
+        Map<String, String> tokens = new HashMap<>();
+        if (keyedTokens.isEnabled()) {
+            for (String original : originalValues) {
+                if (original != null) {
+                    tokens.put(original, issueKeyedToken(original));
+                }
+            }
+            return tokens;
+        }
+        anonymizeMappings(originalValues).forEach((original, mapping) ->
+                tokens.put(original, mapping.getAnonymizedValue()));
+        return tokens;
+    }
+
+    /**
+     * Mappings for many values, keyed by the original value: existing ones are read with one
+     * IN query per 1000 uncached values and the missing ones are created with one multi-row
+     * insert.
+     */
+    @Transactional
+    public Map<String, AnonymizedMapping> anonymizeMappings(Collection<String> originalValues) {
+        Map<String, AnonymizedMapping> result = new HashMap<>();
+        Map<String, String> missing = new HashMap<>();
+        for (String original : originalValues) {
+            if (original == null || result.containsKey(original)) {
+                continue;
+            }
+            String hash = generateHash(original);
+            AnonymizedMapping cached = byHash.getIfPresent(hash);
+            if (cached != null) {
+                result.put(original, cached);
+            } else {
+                missing.put(hash, original);
+            }
+        }
+
+        for (List<String> chunk : Iterables.partition(missing.keySet(), IN_CHUNK_SIZE)) {
+            for (AnonymizedMapping m : findByHashes(chunk)) {
+                String original = missing.get(m.getOriginalHash());
+                result.put(original, m);
+                cacheAfterCommit(m, original);
+            }
+        }
+
+        Map<String, String> absent = new HashMap<>();
+        missing.forEach((hash, original) -> {
+            if (!result.containsKey(original)) {
+                absent.put(hash, original);
+            }
+        });
+        if (!absent.isEmpty()) {
+            createMappings(absent).forEach((hash, mapping) -> result.put(absent.get(hash), mapping));
+        }
+        return result;
+    }
+
+    /**
+     * Creates mappings for values that had none, keyed by hash. The insert skips hashes that
+     * a concurrent transaction created first, and those are read back afterwards, so racing
+     * first-time transfers to the same account share one mapping and neither one fails.
+     * A skipped row whose hash is still unknown lost on the random token instead, and is
+     * retried with a fresh one.
+     */
+    private Map<String, AnonymizedMapping> createMappings(Map<String, String> originalsByHash) {
+        Map<String, AnonymizedMapping> created = new HashMap<>();
+        Map<String, String> pending = new HashMap<>(originalsByHash);
+        for (int attempt = 1; !pending.isEmpty(); attempt++) {
+            if (attempt > MAX_CREATE_ATTEMPTS) {
+                throw new IllegalStateException("Could not create anonymization mappings");
+            }
+            for (List<String> chunk : Iterables.partition(new ArrayList<>(pending.keySet()), IN_CHUNK_SIZE)) {
+                String[] hashes = chunk.toArray(new String[0]);
+                String[] tokens = new String[hashes.length];
+                String[] encrypted = new String[hashes.length];
+                for (int i = 0; i < hashes.length; i++) {
+                    String original = pending.get(hashes[i]);
+                    tokens[i] = keyedTokens.isEnabled()
+                            ? keyedTokens.token(original)
+                            : "USER-" + UUID.randomUUID().toString().substring(0, 8);
+                    encrypted[i] = encryptionService.encrypt(original);
+                }
+
+                List<AnonymizedMapping> inserted = mappingRepo.insertIfAbsent(hashes, tokens, encrypted, dualHashes);
+                for (AnonymizedMapping m : inserted) {
+                    created.put(m.getOriginalHash(), m);
+                    cacheAfterCommit(m, pending.remove(m.getOriginalHash()));
+                }
+                if (inserted.size() < hashes.length) {
+                    for (AnonymizedMapping m : findByHashes(chunk)) {
+                        String original = pending.remove(m.getOriginalHash());
+                        if (original != null) {
+                            created.put(m.getOriginalHash(), m);
+                            cacheAfterCommit(m, original);
+                        }
+                    }
+                }
+            }
+        }
+        return created;
+    }
+
+    private Optional<AnonymizedMapping> findByHash(String hash) {
+        Optional<AnonymizedMapping> mapping = mappingRepo.findByOriginalDigest(digest(hash));
+        if (mapping.isEmpty() && dualHashes) {
+            mapping = mappingRepo.findByOriginalHash(hash);
+        }
+        return mapping;
+    }
+
+    private List<AnonymizedMapping> findByHashes(List<String> hashes) {
+        List<byte[]> digests = new ArrayList<>(hashes.size());
+        for (String hash : hashes) {
+            digests.add(digest(hash));
+        }
+        List<AnonymizedMapping> found = new ArrayList<>(mappingRepo.findByOriginalDigestIn(digests));
+        if (dualHashes && found.size() < hashes.size()) {
+            Set<String> seen = new HashSet<>();
+            for (AnonymizedMapping m : found) {
+                seen.add(m.getOriginalHash());
+            }
+            List<String> rest = new ArrayList<>();
+            for (String hash : hashes) {
+                if (!seen.contains(hash)) {
+                    rest.add(hash);
+                }
+            }
+            found.addAll(mappingRepo.findByOriginalHashIn(rest));
+        }
+        return found;
     }
 
     public String deanonymize(String anonymized) {
+        if (anonymized != null) {
+            String cached = originals.getIfPresent(anonymized);
+            if (cached != null) {
+                return cached;
+            }
+        }
         return mappingRepo.findByAnonymizedValue(anonymized)
-                .map(m -> {
-                    try {
-                        return encryptionService.decrypt(m.getEncryptedOriginal());
-                    } catch (Exception e) {
-                        return "DECRYPTION_ERROR";
-                    }
-                })
+                .map(this::original)
                 .orElse("UNKNOWN_USER");
     }
 
+    public String deanonymizeById(Long mappingId) {
+        if (mappingId == null) {
+            return "UNKNOWN_USER";
+        }
+        return findMappingsById(List.of(mappingId)).values().stream()
+                .findFirst()
+                .map(this::original)
+                .orElse("UNKNOWN_USER");
+    }
+
+    public String original(AnonymizedMapping mapping) {
+        String cached = originals.getIfPresent(mapping.getAnonymizedValue());
+        if (cached != null) {
+            return cached;
+        }
+        String original = decrypt(mapping);
+        if (original != null) {
+            cacheAfterCommit(mapping, original);
+            return original;
+        }
+        return "DECRYPTION_ERROR";
+    }
+
+    /**
+     * Decrypted originals keyed by token, decrypting uncached ones in parallel. Values that
+     * fail to decrypt map to "DECRYPTION_ERROR", as with original.
+     */
+    public Map<String, String> originals(Collection<AnonymizedMapping> mappings) {
+        Map<String, String> result = new HashMap<>();
+        List<AnonymizedMapping> pending = new ArrayList<>();
+        for (AnonymizedMapping mapping : mappings) {
+            String cached = originals.getIfPresent(mapping.getAnonymizedValue());
+            if (cached != null) {
+                result.put(mapping.getAnonymizedValue(), cached);
+            } else {
+                pending.add(mapping);
+            }
+        }
+
+        if (pending.size() < PARALLEL_DECRYPT_THRESHOLD) {
+            for (AnonymizedMapping mapping : pending) {
+                result.put(mapping.getAnonymizedValue(), original(mapping));
+            }
+            return result;
+        }
+
+        List<CompletableFuture<String>> decrypted = new ArrayList<>(pending.size());
+        for (AnonymizedMapping mapping : pending) {
+            decrypted.add(CompletableFuture.supplyAsync(() -> decrypt(mapping), decryptPool));
+        }
+        // Cache writes stay on this thread, where the transaction synchronization lives
+        for (int i = 0; i < pending.size(); i++) {
+            AnonymizedMapping mapping = pending.get(i);
+            String original = decrypted.get(i).join();
+            if (original != null) {
+                cacheAfterCommit(mapping, original);
+                result.put(mapping.getAnonymizedValue(), original);
+            } else {
+                result.put(mapping.getAnonymizedValue(), "DECRYPTION_ERROR");
+            }
+        }
+        return result;
+    }
+
+    // null when the value cannot be decrypted
+    private String decrypt(AnonymizedMapping mapping) {
+        try {
+            return encryptionService.decrypt(mapping.getEncryptedOriginal());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    // Mapping rows by id, one IN query per 1000 uncached ids; ids without a row are absent from the result
+    public Map<Long, AnonymizedMapping> findMappingsById(Collection<Long> mappingIds) {
+        Map<Long, AnonymizedMapping> found = new HashMap<>();
+        Set<Long> missing = new HashSet<>();
+        for (Long id : mappingIds) {
+            if (id == null) {
+                continue;
+            }
+            AnonymizedMapping cached = byId.getIfPresent(id);
+            if (cached != null) {
+                found.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+
+        for (List<Long> chunk : Iterables.partition(missing, IN_CHUNK_SIZE)) {
+            for (AnonymizedMapping m : mappingRepo.findByIdIn(chunk)) {
+                found.put(m.getId(), m);
+                cacheAfterCommit(m, null);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Resolves many anonymized values with one query per 1000 uncached values. Every
+     * non-null input is a key of the result, mapped the same way deanonymize would map it.
+     */
+    public Map<String, String> deanonymizeAll(Collection<String> anonymizedValues) {
+        Map<String, String> resolved = new HashMap<>();
+        Set<String> missing = new HashSet<>();
+        for (String value : anonymizedValues) {
+            if (value == null || resolved.containsKey(value)) {
+                continue;
+            }
+            String cached = originals.getIfPresent(value);
+            if (cached != null) {
+                resolved.put(value, cached);
+            } else {
+                missing.add(value);
+            }
+        }
+
+        for (List<String> chunk : Iterables.partition(missing, IN_CHUNK_SIZE)) {
+            resolved.putAll(originals(mappingRepo.findByAnonymizedValueIn(chunk)));
+        }
+        for (String value : missing) {
+            resolved.putIfAbsent(value, "UNKNOWN_USER");
+        }
+        return resolved;
+    }
+
+    /**
+     * Drops the given tokens from the caches of this instance and, when cluster
+     * invalidation is enabled, of every other instance.
+     */
+    public void invalidate(Collection<String> anonymizedValues) {
+        evict(anonymizedValues);
+        AnonymizationCacheBus bus = cacheBus.getIfAvailable();
+        if (bus != null) {
+            bus.publish(anonymizedValues);
+        }
+    }
+
+    public void invalidateAll() {
+        evictAll();
+        AnonymizationCacheBus bus = cacheBus.getIfAvailable();
+        if (bus != null) {
+            bus.publishAll();
+        }
+    }
+
+    // Local eviction only; called by invalidate and by the cluster bus
+    void evict(Collection<String> anonymizedValues) {
+        Set<String> tokens = new HashSet<>(anonymizedValues);
+        originals.invalidateAll(tokens);
+        byHash.asMap().values().removeIf(m -> tokens.contains(m.getAnonymizedValue()));
+        byId.asMap().values().removeIf(m -> tokens.contains(m.getAnonymizedValue()));
+    }
+
+    void evictAll() {
+        byHash.invalidateAll();
+        byId.invalidateAll();
+        originals.invalidateAll();
+    }
+
+    public Map<String, Object> getCacheMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("byHash", cacheMetrics(byHash));
+        metrics.put("byId", cacheMetrics(byId));
+        metrics.put("originals", cacheMetrics(originals));
+        AnonymizationCacheBus bus = cacheBus.getIfAvailable();
+        metrics.put("tokenMode", keyedTokens.isEnabled() ? "hmac" : "random");
+        metrics.put("hashStorage", dualHashes ? "dual" : "binary");
+        if (keyedTokens.isEnabled()) {
+            metrics.put("keyedTokensIssued", keyedTokensIssued.sum());
+            metrics.put("keyedMappingInserts", mappingInserts.sum());
+            metrics.put("writtenMappingsTracked", writtenMappings.approximateElementCount());
+            metrics.put("writtenMappingsCapacity", writtenCapacity);
+            metrics.put("olderMappingsLoaded", olderMappings != null);
+        }
+        metrics.put("clusterInvalidation", bus != null);
+        if (bus != null) {
+            metrics.put("invalidationsReceived", bus.getReceived());
+        }
+        return metrics;
+    }
+
+    private static Map<String, Object> cacheMetrics(Cache<?, ?> cache) {
+        CacheStats stats = cache.stats();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("size", cache.size());
+        metrics.put("hits", stats.hitCount());
+        metrics.put("misses", stats.missCount());
+        metrics.put("hitRate", stats.hitRate());
+        metrics.put("evictions", stats.evictionCount());
+        return metrics;
+    }
+
+    // original may be null when only the mapping row is known
+    private void cacheAfterCommit(AnonymizedMapping mapping, String original) {
+        Runnable put = () -> cacheMapping(mapping, original);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    put.run();
+                }
+            });
+        } else {
+            put.run();
+        }
+    }
+
+    private void cacheMapping(AnonymizedMapping mapping, String original) {
+        byHash.put(mapping.getOriginalHash(), mapping);
+        byId.put(mapping.getId(), mapping);
+        if (original != null) {
+            originals.put(mapping.getAnonymizedValue(), original);
+        }
+    }
+
+    private static byte[] digest(String hash) {
+        return HexFormat.of().parseHex(hash);
+    }
+
     private String generateHash(String input) {
         return Hashing.sha256()
                 .hashString(input + ANONYMIZATION_SALT, StandardCharsets.UTF_8)
@@ -0,0 +1,120 @@
+package QwaBar4.bank.Service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+@Service
+public class ConcurrencyRetryExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(ConcurrencyRetryExecutor.class);
+    private static final long BASE_BACKOFF_MILLIS = 5;
+    private static final long MAX_BACKOFF_MILLIS = 200;
+    private static final int CONTENTION_REPORT_SIZE = 20;
+
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final boolean optimistic;
+
+    private final LongAdder attempts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+    private final Map<String, LongAdder> conflictsByAccount = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ConcurrencyRetryExecutor(PlatformTransactionManager transactionManager,
+                                    @Value("${bank.concurrency.mode:pessimistic}") String mode,
+                                    @Value("${bank.concurrency.max-attempts:5}") int maxAttempts) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.optimistic = "optimistic".equalsIgnoreCase(mode);
+        this.maxAttempts = Math.max(1, maxAttempts);
+    }
+
+    public boolean isOptimistic() {
+        return optimistic;
+    }
+
+    /**
+     * Runs the work in a fresh transaction, retrying with jittered exponential backoff
+     * when it loses an optimistic version check, a lock wait or a serialization check.
+     * Inside an existing transaction the work joins it and the outermost caller retries.
+     */
+    public <T> T execute(Collection<String> accountKeys, TransactionCallback<T> work) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return transactionTemplate.execute(work);
+        }
+        return retry(accountKeys, () -> transactionTemplate.execute(work));
+    }
+
+    // The retry loop of execute around an attempt that runs its own transaction
+    public <T> T retry(Collection<String> accountKeys, Supplier<T> attempt) {
+        for (int attemptNumber = 1; ; attemptNumber++) {
+            attempts.increment();
+            try {
+                return attempt.get();
+            } catch (ConcurrencyFailureException e) {
+                recordConflict(accountKeys, e);
+                if (attemptNumber >= maxAttempts) {
+                    exhausted.increment();
+                    logger.warn("Giving up after {} attempts on accounts {}", attemptNumber, accountKeys, e);
+                    throw e;
+                }
+                retries.increment();
+                backoff(attemptNumber);
+            }
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Long> hottest = new LinkedHashMap<>();
+        conflictsByAccount.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<String, LongAdder> e) -> e.getValue().sum()).reversed())
+                .limit(CONTENTION_REPORT_SIZE)
+                .forEach(e -> hottest.put(e.getKey(), e.getValue().sum()));
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("mode", optimistic ? "optimistic" : "pessimistic");
+        metrics.put("attempts", attempts.sum());
+        metrics.put("retries", retries.sum());
+        metrics.put("exhausted", exhausted.sum());
+        metrics.put("conflictsByAccount", hottest);
+        return metrics;
+    }
+
+    private void recordConflict(Collection<String> accountKeys, ConcurrencyFailureException e) {
+        if (accountKeys.isEmpty() && e instanceof ObjectOptimisticLockingFailureException optimisticFailure
+                && optimisticFailure.getIdentifier() != null) {
+            conflictsByAccount.computeIfAbsent("id:" + optimisticFailure.getIdentifier(), k -> new LongAdder()).increment();
+            return;
+        }
+        for (String key : accountKeys) {
+            conflictsByAccount.computeIfAbsent(key, k -> new LongAdder()).increment();
+        }
+    }
+
+    private void backoff(int attempt) {
+        long ceiling = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << (attempt - 1));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrying", e);
+        }
+    }
+}
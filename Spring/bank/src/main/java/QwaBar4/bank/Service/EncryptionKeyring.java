@@ -0,0 +1,233 @@
+package QwaBar4.bank.Service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import javax.sql.DataSource;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Data keys for envelope encryption. Each data key is a random AES-256 key stored in
+ * encryption_keys wrapped (AES key wrap) under a key-encryption key from configuration,
+ * so the database never holds a usable key. The newest data key encrypts new values; older
+ * ones are kept so existing values stay readable until ReEncryptionService has rewritten
+ * them. Instances pick up a key rotated elsewhere within bank.encryption.refresh-seconds.
+ *
+ * Disabled when no key-encryption keys are configured. Uses plain JDBC with its own
+ * transactions because AESEncryptionService, and so this class, is needed while JPA
+ * itself is still being set up.
+ */
+@Service
+public class EncryptionKeyring {
+    private static final Logger logger = LoggerFactory.getLogger(EncryptionKeyring.class);
+    private static final String WRAP_ALGORITHM = "AESWrap";
+
+    public static final class DataKey {
+        private final int id;
+        private final SecretKey key;
+
+        private DataKey(int id, SecretKey key) {
+            this.id = id;
+            this.key = key;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public SecretKey getKey() {
+            return key;
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate writeTransaction;
+    private final Map<String, SecretKey> keks = new HashMap<>();
+    private final String activeKek;
+    private final long refreshMillis;
+    private final Map<Integer, SecretKey> dataKeys = new ConcurrentHashMap<>();
+    private volatile DataKey active;
+    private volatile long nextRefresh;
+
+    @Autowired
+    public EncryptionKeyring(DataSource dataSource,
+                             @Value("${bank.encryption.keks:}") String kekSpec,
+                             @Value("${bank.encryption.active-kek:}") String activeKek,
+                             @Value("${bank.encryption.refresh-seconds:60}") long refreshSeconds) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.writeTransaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.activeKek = activeKek.trim();
+        this.refreshMillis = Math.max(1, refreshSeconds) * 1000;
+
+        // id:base64key,id:base64key
+        for (String entry : kekSpec.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid key-encryption key entry, expected id:base64key");
+            }
+            byte[] key = Base64.getDecoder().decode(entry.substring(separator + 1).trim());
+            keks.put(entry.substring(0, separator).trim(), new SecretKeySpec(key, "AES"));
+        }
+        if (!keks.isEmpty() && !keks.containsKey(this.activeKek)) {
+            throw new IllegalStateException("No key-encryption key configured for id '" + this.activeKek + "'");
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!isEnabled()) {
+            return;
+        }
+        reload();
+        if (active == null) {
+            rotate();
+        }
+        logger.info("Envelope encryption enabled, data key {} active", active.getId());
+    }
+
+    public boolean isEnabled() {
+        return !keks.isEmpty();
+    }
+
+    // Longest an instance keeps encrypting with a data key after a newer one was created
+    public long getRefreshMillis() {
+        return refreshMillis;
+    }
+
+    // Key for new values
+    public DataKey active() {
+        if (System.currentTimeMillis() >= nextRefresh) {
+            reload();
+        }
+        return active;
+    }
+
+    // Key a stored value names in its header
+    public SecretKey key(int id) {
+        SecretKey key = dataKeys.get(id);
+        if (key == null) {
+            reload();
+            key = dataKeys.get(id);
+            if (key == null) {
+                throw new IllegalStateException("Unknown data key " + id);
+            }
+        }
+        return key;
+    }
+
+    private synchronized void reload() {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT id, kek_id, wrapped_key FROM encryption_keys ORDER BY id");
+        for (Map<String, Object> row : rows) {
+            int id = ((Number) row.get("id")).intValue();
+            if (!dataKeys.containsKey(id)) {
+                dataKeys.put(id, unwrap((String) row.get("kek_id"), (String) row.get("wrapped_key")));
+            }
+            if (active == null || id > active.getId()) {
+                active = new DataKey(id, dataKeys.get(id));
+            }
+        }
+        nextRefresh = System.currentTimeMillis() + refreshMillis;
+    }
+
+    /**
+     * Creates a new data key and makes it the one new values are encrypted with. Existing
+     * values keep their key until the re-encryption job reaches them.
+     */
+    public synchronized DataKey rotate() {
+        if (!isEnabled()) {
+            throw new IllegalStateException("Envelope encryption is not enabled");
+        }
+        try {
+            KeyGenerator generator = KeyGenerator.getInstance("AES");
+            generator.init(256);
+            String wrapped = wrap(generator.generateKey());
+            writeTransaction.executeWithoutResult(status -> jdbcTemplate.queryForObject(
+                    "INSERT INTO encryption_keys (kek_id, wrapped_key, created_at) VALUES (?, ?, now()) RETURNING id",
+                    Integer.class, activeKek, wrapped));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not create data key", e);
+        }
+        reload();
+        logger.info("Rotated to data key {}", active.getId());
+        return active;
+    }
+
+    /**
+     * Re-wraps every data key still wrapped under another key-encryption key with the active
+     * one, after which the old key-encryption key can be removed from configuration.
+     */
+    public synchronized int rewrap() {
+        if (!isEnabled()) {
+            throw new IllegalStateException("Envelope encryption is not enabled");
+        }
+        reload();
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT id, kek_id FROM encryption_keys WHERE kek_id <> ?", activeKek);
+        int rewrapped = 0;
+        for (Map<String, Object> row : rows) {
+            int id = ((Number) row.get("id")).intValue();
+            String wrapped = wrap(dataKeys.get(id));
+            Integer updated = writeTransaction.execute(status -> jdbcTemplate.update(
+                    "UPDATE encryption_keys SET kek_id = ?, wrapped_key = ? WHERE id = ? AND kek_id = ?",
+                    activeKek, wrapped, id, row.get("kek_id")));
+            rewrapped += updated != null ? updated : 0;
+        }
+        return rewrapped;
+    }
+
+    private String wrap(SecretKey dataKey) {
+        try {
+            Cipher cipher = Cipher.getInstance(WRAP_ALGORITHM);
+            cipher.init(Cipher.WRAP_MODE, keks.get(activeKek));
+            return Base64.getEncoder().encodeToString(cipher.wrap(dataKey));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not wrap data key", e);
+        }
+    }
+
+    private SecretKey unwrap(String kekId, String wrapped) {
+        SecretKey kek = keks.get(kekId);
+        if (kek == null) {
+            throw new IllegalStateException("Data key wrapped under unknown key-encryption key '" + kekId + "'");
+        }
+        try {
+            Cipher cipher = Cipher.getInstance(WRAP_ALGORITHM);
+            cipher.init(Cipher.UNWRAP_MODE, kek);
+            return (SecretKey) cipher.unwrap(Base64.getDecoder().decode(wrapped), "AES", Cipher.SECRET_KEY);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not unwrap data key", e);
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("enabled", isEnabled());
+        if (isEnabled()) {
+            metrics.put("activeDataKey", active != null ? active.getId() : null);
+            metrics.put("dataKeys", dataKeys.size());
+            metrics.put("activeKek", activeKek);
+        }
+        return metrics;
+    }
+}
@@ -3,4 +3,5 @@ package QwaBar4.bank.Service;
 public interface EncryptionService {
     String encrypt(String data);
     String decrypt(String encryptedData);
+    boolean needsReEncryption(String encryptedData);
 }
@@ -0,0 +1,156 @@
+package QwaBar4.bank.Service;
+
+import QwaBar4.bank.Model.AccountBalanceSlot;
+import QwaBar4.bank.Model.AccountBalanceSlotRepository;
+import QwaBar4.bank.Model.AccountBalanceView;
+import QwaBar4.bank.Model.AccountModel;
+import QwaBar4.bank.Model.AccountModelRepository;
+import QwaBar4.bank.Utils.AccountNumberUtils;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Hot-account mode for accounts with a high fan-in of credits. A hot account keeps part of
+ * its balance in N slot rows; each credit updates one random slot instead of the account
+ * row, so concurrent credits no longer queue on a single row lock. Debits sweep the slots
+ * back into the account row when its own balance is not enough, and balance reads add the
+ * slots through AccountModel.getTotalBalance().
+ *
+ * Slot rows are never deleted. Disabling the mode sweeps them and stops new credits from
+ * landing there, so a stale view of which accounts are hot can only cost a row lock.
+ */
+@Service
+public class HotAccountService {
+    public static final int MAX_SLOTS = 64;
+
+    private final AccountModelRepository accountRepo;
+    private final AccountBalanceSlotRepository slotRepo;
+
+    // Raw account number -> slot count, refreshed from the accounts table
+    private volatile Map<String, Integer> hotAccounts = new ConcurrentHashMap<>();
+    // The same by account id, for callers that only have the id
+    private volatile Map<Long, Integer> hotAccountIds = new ConcurrentHashMap<>();
+
+    @Autowired
+    public HotAccountService(AccountModelRepository accountRepo, AccountBalanceSlotRepository slotRepo) {
+        this.accountRepo = accountRepo;
+        this.slotRepo = slotRepo;
+    }
+
+    @PostConstruct
+    @Scheduled(fixedDelay = 30000)
+    public void refresh() {
+        Map<String, Integer> loaded = new ConcurrentHashMap<>();
+        Map<Long, Integer> loadedIds = new ConcurrentHashMap<>();
+        for (Object[] row : accountRepo.findHotAccountSlots()) {
+            loaded.put((String) row[0], ((Number) row[1]).intValue());
+            loadedIds.put(((Number) row[2]).longValue(), ((Number) row[1]).intValue());
+        }
+        hotAccounts = loaded;
+        hotAccountIds = loadedIds;
+    }
+
+    public boolean isHot(String accountNumber) {
+        return accountNumber != null && hotAccounts.containsKey(accountNumber);
+    }
+
+    // Slot count of a hot account, 0 for any other account
+    public int slotCount(Long accountId) {
+        return accountId == null ? 0 : hotAccountIds.getOrDefault(accountId, 0);
+    }
+
+    public Set<String> hotAmong(Collection<String> accountNumbers) {
+        Set<String> hot = new HashSet<>();
+        for (String accountNumber : accountNumbers) {
+            if (isHot(accountNumber)) {
+                hot.add(accountNumber);
+            }
+        }
+        return hot;
+    }
+
+    // Credits a random slot of a hot account; the account row itself is left untouched
+    public void credit(AccountModel account, String accountNumber, BigDecimal amount) {
+        if (slotRepo.creditSlot(account.getId(), randomSlot(accountNumber), amount) == 0) {
+            throw new RuntimeException("Balance slot missing for account " + account.getId());
+        }
+    }
+
+    public Optional<AccountBalanceView> creditOwned(String accountNumber, String username, BigDecimal amount) {
+        return slotRepo.creditOwnedSlot(accountNumber, username, randomSlot(accountNumber), amount);
+    }
+
+    // Moves everything held in slots into the locked account entity
+    public void sweep(AccountModel account) {
+        BigDecimal swept = slotRepo.sweep(account.getId());
+        if (swept.signum() != 0) {
+            account.setBalance(account.getBalance().add(swept));
+        }
+    }
+
+    public boolean sweep(String accountNumber) {
+        return slotRepo.sweepIntoAccount(accountNumber) > 0;
+    }
+
+    @Transactional
+    public Map<String, Object> enable(Long accountId, int slots) {
+        if (slots < 1 || slots > MAX_SLOTS) {
+            throw new IllegalArgumentException("Slot count must be between 1 and " + MAX_SLOTS);
+        }
+        AccountModel account = accountRepo.findById(accountId)
+                .orElseThrow(() -> new RuntimeException("Account not found"));
+
+        int existing = slotRepo.findHighestSlot(accountId).map(highest -> highest + 1).orElse(0);
+        List<AccountBalanceSlot> created = new ArrayList<>();
+        for (int slot = existing; slot < slots; slot++) {
+            created.add(new AccountBalanceSlot(accountId, slot));
+        }
+        slotRepo.saveAll(created);
+
+        account.setHotSlots(slots);
+        accountRepo.save(account);
+        hotAccounts.put(AccountNumberUtils.convertFormattedNumberToUuid(account.getAccountNumber()), slots);
+        hotAccountIds.put(accountId, slots);
+        return describe(account);
+    }
+
+    @Transactional
+    public Map<String, Object> disable(Long accountId) {
+        AccountModel account = accountRepo.findById(accountId)
+                .orElseThrow(() -> new RuntimeException("Account not found"));
+
+        sweep(account);
+        account.setHotSlots(0);
+        accountRepo.save(account);
+        hotAccounts.remove(AccountNumberUtils.convertFormattedNumberToUuid(account.getAccountNumber()));
+        hotAccountIds.remove(accountId);
+        return describe(account);
+    }
+
+    private int randomSlot(String accountNumber) {
+        return ThreadLocalRandom.current().nextInt(hotAccounts.getOrDefault(accountNumber, 1));
+    }
+
+    private Map<String, Object> describe(AccountModel account) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("accountId", account.getId());
+        result.put("hotSlots", account.getHotSlots());
+        result.put("balance", account.getBalance());
+        return result;
+    }
+}
@@ -1,11 +1,17 @@
 package QwaBar4.bank.Service;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import QwaBar4.bank.Model.AccountModel;
+import QwaBar4.bank.Model.JournalPosting;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import QwaBar4.bank.Model.AccountModelRepository;
 import java.time.LocalDateTime;
 
@@ -13,22 +19,44 @@ import java.time.LocalDateTime;
 public class InterestService {
 
     private final AccountModelRepository accountRepository;
+    private final ConcurrencyRetryExecutor retryExecutor;
+    private final JournalService journalService;
     private static final double ANNUAL_INTEREST_RATE = 1.0; // 1% annual interest
+    private static final int CHUNK_SIZE = 500;
 
-    public InterestService(AccountModelRepository accountRepository) {
+    public InterestService(AccountModelRepository accountRepository,
+                           ConcurrencyRetryExecutor retryExecutor,
+                           JournalService journalService) {
         this.accountRepository = accountRepository;
+        this.retryExecutor = retryExecutor;
+        this.journalService = journalService;
     }
 
 	@Scheduled(cron = "0 0 0 * * *") // Runs daily at midnight
-	@Transactional
 	public void applyDailyInterest() {
-		List<AccountModel> accounts = accountRepository.findAll();
-		for (AccountModel account : accounts) {
-		    BigDecimal dailyInterest = account.getBalance().multiply(BigDecimal.valueOf(ANNUAL_INTEREST_RATE / 36500));
-		    account.setBalance(account.getBalance().add(dailyInterest));
-		    account.setLastInterestCalculation(LocalDateTime.now());
+		// Each chunk commits on its own so a version conflict only replays that chunk
+		boolean more = true;
+		for (int page = 0; more; page++) {
+		    int current = page;
+		    more = retryExecutor.execute(Collections.emptyList(), status -> {
+		        Page<AccountModel> chunk = accountRepository.findAll(PageRequest.of(current, CHUNK_SIZE, Sort.by("id")));
+		        List<AccountModel> accounts = chunk.getContent();
+		        List<JournalPosting> postings = new ArrayList<>();
+		        for (AccountModel account : accounts) {
+		            BigDecimal dailyInterest = account.getTotalBalance().multiply(BigDecimal.valueOf(ANNUAL_INTEREST_RATE / 36500))
+		                    .setScale(2, RoundingMode.HALF_EVEN);
+		            account.setBalance(account.getBalance().add(dailyInterest));
+		            account.setLastInterestCalculation(LocalDateTime.now());
+		            if (dailyInterest.signum() != 0) {
+		                postings.addAll(journalService.movement(TransactionType.INTEREST,
+		                        null, JournalService.INTEREST, account.getId(), JournalService.CUSTOMER, dailyInterest));
+		            }
+		        }
+		        accountRepository.saveAll(accounts);
+		        journalService.post(postings);
+		        return chunk.hasNext();
+		    });
 		}
-		accountRepository.saveAll(accounts);
 	}
 	
 }
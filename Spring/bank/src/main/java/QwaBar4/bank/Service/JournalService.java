@@ -0,0 +1,177 @@
+package QwaBar4.bank.Service;
+
+import QwaBar4.bank.Model.AccountBalanceSlotRepository;
+import QwaBar4.bank.Model.AccountModel;
+import QwaBar4.bank.Model.AccountModelRepository;
+import QwaBar4.bank.Model.BalanceSnapshot;
+import QwaBar4.bank.Model.BalanceSnapshotRepository;
+import QwaBar4.bank.Model.JournalPosting;
+import QwaBar4.bank.Model.JournalPostingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Double-entry journal. Every money movement writes one debit and one credit posting in the
+ * same transaction as the balance change. Postings are never deleted; deleting an account
+ * only clears their account_id, so movements still balance. The balance column on accounts
+ * is still updated in place on every movement: the conditional debits and the row locks of
+ * transfers check against it. The journal plus periodic snapshots can rebuild it at any time.
+ *
+ * Snapshots cover postings up to a commit watermark rather than an id, because pooled ids
+ * are handed out in blocks per instance and do not follow commit order; see
+ * journal_commit_order.sql. Taking the watermark waits for the posting transactions open
+ * at that moment to end, but never holds up new ones.
+ */
+@Service
+public class JournalService {
+    private static final Logger logger = LoggerFactory.getLogger(JournalService.class);
+
+    public static final String CUSTOMER = "CUSTOMER";
+    public static final String EXTERNAL = "EXTERNAL";
+    public static final String INTEREST = "INTEREST";
+
+    private final JournalPostingRepository postingRepo;
+    private final BalanceSnapshotRepository snapshotRepo;
+    private final AccountModelRepository accountRepo;
+    private final AccountBalanceSlotRepository slotRepo;
+    private final MonthlySummaryService monthlySummaryService;
+    private final TransactionTemplate writeTransaction;
+    private final long watermarkWaitMillis;
+
+    private final LongAdder snapshotRuns = new LongAdder();
+    private final LongAdder snapshotsSkipped = new LongAdder();
+    private final LongAdder watermarkWaitTotalMillis = new LongAdder();
+    private volatile long lastWatermarkWaitMillis;
+
+    @Autowired
+    public JournalService(JournalPostingRepository postingRepo,
+                          BalanceSnapshotRepository snapshotRepo,
+                          AccountModelRepository accountRepo,
+                          AccountBalanceSlotRepository slotRepo,
+                          MonthlySummaryService monthlySummaryService,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${bank.ledger.snapshot-watermark-wait-ms:60000}") long watermarkWaitMillis) {
+        this.postingRepo = postingRepo;
+        this.snapshotRepo = snapshotRepo;
+        this.accountRepo = accountRepo;
+        this.slotRepo = slotRepo;
+        this.monthlySummaryService = monthlySummaryService;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.watermarkWaitMillis = watermarkWaitMillis;
+    }
+
+    public List<JournalPosting> movement(TransactionType type,
+                                         Long debitAccountId, String debitLedger,
+                                         Long creditAccountId, String creditLedger,
+                                         BigDecimal amount) {
+        String movementId = UUID.randomUUID().toString();
+        LocalDateTime now = LocalDateTime.now();
+        return List.of(
+            new JournalPosting(movementId, debitAccountId, debitLedger, type.name(), amount.negate(), now),
+            new JournalPosting(movementId, creditAccountId, creditLedger, type.name(), amount, now)
+        );
+    }
+
+    public void post(List<JournalPosting> postings) {
+        postingRepo.saveAll(postings);
+        monthlySummaryService.apply(postings);
+    }
+
+    public void recordTransfer(Long sourceAccountId, Long targetAccountId, BigDecimal amount) {
+        post(movement(TransactionType.TRANSFER, sourceAccountId, CUSTOMER, targetAccountId, CUSTOMER, amount));
+    }
+
+    public void recordDeposit(Long accountId, BigDecimal amount) {
+        post(movement(TransactionType.DEPOSIT, null, EXTERNAL, accountId, CUSTOMER, amount));
+    }
+
+    public void recordWithdrawal(Long accountId, BigDecimal amount) {
+        post(movement(TransactionType.WITHDRAWAL, accountId, CUSTOMER, null, EXTERNAL, amount));
+    }
+
+    @Transactional(readOnly = true)
+    public BigDecimal currentBalance(Long accountId) {
+        Optional<BalanceSnapshot> snapshot = snapshotRepo.findFirstByAccountIdOrderByLastCommitSeqDesc(accountId);
+        BigDecimal base = snapshot.map(BalanceSnapshot::getBalance).orElse(BigDecimal.ZERO);
+        Long after = snapshot.map(BalanceSnapshot::getLastCommitSeq).orElse(0L);
+        return base.add(postingRepo.sumForAccountAfter(accountId, after));
+    }
+
+    // Each step runs in its own read-write transaction: on the primary, and as separate
+    // statements so the open transactions are listed only after the sequence was read.
+    @Scheduled(cron = "0 */15 * * * *")
+    public void takeSnapshots() {
+        Long watermark = writeTransaction.execute(status -> postingRepo.lastCommitSeq());
+        if (watermark == null || watermark == 0) {
+            return;
+        }
+        String openTransactions = writeTransaction.execute(status -> postingRepo.openTransactionIds());
+
+        long started = System.currentTimeMillis();
+        try {
+            while (writeTransaction.execute(status -> postingRepo.countInProgress(openTransactions)) > 0) {
+                if (System.currentTimeMillis() - started > watermarkWaitMillis) {
+                    snapshotsSkipped.increment();
+                    logger.warn("Skipping journal snapshots, transactions open at commit_seq {} still running after {} ms",
+                            watermark, watermarkWaitMillis);
+                    return;
+                }
+                Thread.sleep(200);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            lastWatermarkWaitMillis = System.currentTimeMillis() - started;
+            watermarkWaitTotalMillis.add(lastWatermarkWaitMillis);
+        }
+
+        writeTransaction.executeWithoutResult(status -> snapshotRepo.rollForwardTo(watermark));
+        snapshotRuns.increment();
+    }
+
+    public Map<String, Object> getSnapshotMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("snapshotRuns", snapshotRuns.sum());
+        metrics.put("snapshotsSkipped", snapshotsSkipped.sum());
+        metrics.put("lastWatermarkWaitMillis", lastWatermarkWaitMillis);
+        metrics.put("watermarkWaitTotalMillis", watermarkWaitTotalMillis.sum());
+        metrics.put("watermarkWaitLimitMillis", watermarkWaitMillis);
+        return metrics;
+    }
+
+    // Recomputes the cached balance column from the full journal of the account
+    @Transactional
+    public Map<String, Object> rebuildBalance(Long accountId) {
+        AccountModel account = accountRepo.findById(accountId)
+                .orElseThrow(() -> new RuntimeException("Account not found"));
+
+        BigDecimal journalBalance = postingRepo.sumForAccountAfter(accountId, 0L);
+        BigDecimal storedBalance = account.getBalance().add(slotRepo.sweep(accountId));
+        account.setBalance(journalBalance);
+        accountRepo.save(account);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("accountId", accountId);
+        result.put("previousBalance", storedBalance);
+        result.put("journalBalance", journalBalance);
+        result.put("corrected", storedBalance == null || storedBalance.compareTo(journalBalance) != 0);
+        return result;
+    }
+}
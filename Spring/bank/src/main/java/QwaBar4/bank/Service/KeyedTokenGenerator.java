@@ -0,0 +1,90 @@
+package QwaBar4.bank.Service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Derives anonymization tokens from an HMAC-SHA256 of the original value, so the same value
+ * always gets the same token without a lookup. Tokens look like "USER-v2-1a2b3c4d5e6f7a8b";
+ * the version names the key that produced them. Only the current version's key is ever
+ * used. Other configured versions are parsed and reported, nothing more: tokens issued
+ * under an older key are found through their anonymization_mappings rows, never
+ * recomputed, so dropping a retired key does not lose them.
+ */
+@Component
+public class KeyedTokenGenerator {
+    private static final String ALGORITHM = "HmacSHA256";
+    // 64 bits of the MAC; collisions stay negligible at any realistic number of values
+    private static final int TOKEN_BYTES = 8;
+
+    private final boolean enabled;
+    private final String currentVersion;
+    private final Map<String, SecretKeySpec> keys = new HashMap<>();
+    private final ThreadLocal<Mac> mac;
+
+    @Autowired
+    public KeyedTokenGenerator(@Value("${bank.anonymization.token-mode:random}") String tokenMode,
+                               @Value("${bank.anonymization.hmac.keys:}") String keySpec,
+                               @Value("${bank.anonymization.hmac.current-version:}") String currentVersion) {
+        this.enabled = "hmac".equalsIgnoreCase(tokenMode.trim());
+        this.currentVersion = currentVersion.trim();
+
+        // version:base64key,version:base64key
+        for (String entry : keySpec.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.indexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid anonymization key entry, expected version:base64key");
+            }
+            String version = entry.substring(0, separator).trim();
+            byte[] key = Base64.getDecoder().decode(entry.substring(separator + 1).trim());
+            keys.put(version, new SecretKeySpec(key, ALGORITHM));
+        }
+
+        if (enabled && !keys.containsKey(this.currentVersion)) {
+            throw new IllegalStateException("No anonymization key configured for version '" + this.currentVersion + "'");
+        }
+        SecretKeySpec current = keys.get(this.currentVersion);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(ALGORITHM);
+                instance.init(current);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Cannot initialise anonymization HMAC", e);
+            }
+        });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String token(String original) {
+        byte[] digest = mac.get().doFinal(original.getBytes(StandardCharsets.UTF_8));
+        return currentPrefix() + HexFormat.of().formatHex(digest, 0, TOKEN_BYTES);
+    }
+
+    // Tokens issued with the current key start with this
+    public String currentPrefix() {
+        return "USER-" + currentVersion + "-";
+    }
+
+    public Set<String> getVersions() {
+        return new HashSet<>(keys.keySet());
+    }
+}
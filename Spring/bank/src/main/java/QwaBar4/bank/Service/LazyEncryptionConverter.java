@@ -0,0 +1,32 @@
+package QwaBar4.bank.Service;
+
+import QwaBar4.bank.Model.LazyEncryptedString;
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Like EncryptionConverter, but loading an entity only wraps the ciphertext; it is
+ * decrypted when the field is first read. Unchanged values are written back as the
+ * ciphertext they were loaded with.
+ */
+@Converter
+public class LazyEncryptionConverter implements AttributeConverter<LazyEncryptedString, String> {
+
+    private final AESEncryptionService encryptionService;
+
+    @Autowired
+    public LazyEncryptionConverter(AESEncryptionService encryptionService) {
+        this.encryptionService = encryptionService;
+    }
+
+    @Override
+    public String convertToDatabaseColumn(LazyEncryptedString attribute) {
+        return attribute == null ? null : attribute.ciphertext(encryptionService);
+    }
+
+    @Override
+    public LazyEncryptedString convertToEntityAttribute(String dbData) {
+        return LazyEncryptedString.encrypted(dbData, encryptionService);
+    }
+}
@@ -0,0 +1,146 @@
+package QwaBar4.bank.Service;
+
+import QwaBar4.bank.Model.AnonymizedMapping;
+import QwaBar4.bank.Model.TransactionModel;
+import QwaBar4.bank.Model.TransactionModelRepository;
+import QwaBar4.bank.Model.TransactionSpecifications;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * How ledger rows refer to their source and target accounts. In TOKEN mode a row stores
+ * the anonymized strings; in REFERENCE mode it stores the ids of the anonymization_mappings
+ * rows instead, which already hold the token and the encrypted account number once. That
+ * keeps rows and indexes narrow and turns history lookups into bigint comparisons.
+ *
+ * Callers look an account up once with find or resolve and pass the mapping to the query
+ * helpers here, so they never need to know which columns the current mode uses. In TOKEN
+ * mode only the token is needed, so the mapping handed out may be an unsaved one carrying
+ * just the token; with keyed tokens that avoids any database access.
+ */
+@Service
+public class LedgerCounterparties {
+
+    public enum Mode {
+        TOKEN,
+        REFERENCE
+    }
+
+    private final AnonymizationService anonymizationService;
+    private final TransactionModelRepository transactionRepo;
+    private final Mode mode;
+
+    @Autowired
+    public LedgerCounterparties(AnonymizationService anonymizationService,
+                                TransactionModelRepository transactionRepo,
+                                @Value("${bank.ledger.counterparty-storage:token}") String mode) {
+        this.anonymizationService = anonymizationService;
+        this.transactionRepo = transactionRepo;
+        this.mode = Mode.valueOf(mode.trim().toUpperCase());
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    // Mapping for an account, created if needed; for write paths
+    public AnonymizedMapping resolve(String accountNumber) {
+        return mode == Mode.REFERENCE
+                ? anonymizationService.anonymizeMapping(accountNumber)
+                : tokenOnly(anonymizationService.anonymize(accountNumber));
+    }
+
+    // Mappings for many accounts in a constant number of round trips, keyed by account number
+    public Map<String, AnonymizedMapping> resolveAll(Collection<String> accountNumbers) {
+        if (mode == Mode.REFERENCE) {
+            return anonymizationService.anonymizeMappings(accountNumbers);
+        }
+        Map<String, AnonymizedMapping> mappings = new HashMap<>();
+        anonymizationService.anonymizeAll(accountNumbers).forEach((accountNumber, token) ->
+                mappings.put(accountNumber, tokenOnly(token)));
+        return mappings;
+    }
+
+    // Existing mapping only; for read paths
+    public Optional<AnonymizedMapping> find(String accountNumber) {
+        return mode == Mode.REFERENCE
+                ? anonymizationService.findMapping(accountNumber)
+                : anonymizationService.findAnonymized(accountNumber).map(this::tokenOnly);
+    }
+
+    private AnonymizedMapping tokenOnly(String token) {
+        AnonymizedMapping mapping = new AnonymizedMapping();
+        mapping.setAnonymizedValue(token);
+        return mapping;
+    }
+
+    public void setSource(TransactionModel row, AnonymizedMapping account) {
+        if (mode == Mode.REFERENCE) {
+            row.setSourceCounterpartyId(account.getId());
+        } else {
+            row.setSourceAccountNumber(account.getAnonymizedValue());
+        }
+    }
+
+    public void setTarget(TransactionModel row, AnonymizedMapping account) {
+        if (mode == Mode.REFERENCE) {
+            row.setTargetCounterpartyId(account.getId());
+        } else {
+            row.setTargetAccountNumber(account.getAnonymizedValue());
+        }
+    }
+
+    public Specification<TransactionModel> involves(AnonymizedMapping account) {
+        return mode == Mode.REFERENCE
+                ? TransactionSpecifications.involvesCounterparty(account.getId())
+                : TransactionSpecifications.involvesAccount(account.getAnonymizedValue());
+    }
+
+    public Specification<TransactionModel> between(AnonymizedMapping account, AnonymizedMapping counterparty) {
+        return mode == Mode.REFERENCE
+                ? TransactionSpecifications.betweenCounterparties(account.getId(), counterparty.getId())
+                : TransactionSpecifications.betweenAccounts(account.getAnonymizedValue(), counterparty.getAnonymizedValue());
+    }
+
+    public List<TransactionModel> findPage(AnonymizedMapping account, LocalDateTime beforeTimestamp,
+                                           Long beforeId, int limit) {
+        return mode == Mode.REFERENCE
+                ? transactionRepo.findPageByCounterpartyId(account.getId(), beforeTimestamp, beforeId, limit)
+                : transactionRepo.findPageByAccountNumber(account.getAnonymizedValue(), beforeTimestamp, beforeId, limit);
+    }
+
+    public List<TransactionModel> findAll(AnonymizedMapping account) {
+        return mode == Mode.REFERENCE
+                ? transactionRepo.findByCounterpartyId(account.getId())
+                : transactionRepo.findByAccountNumbers(account.getAnonymizedValue());
+    }
+
+    public Stream<TransactionModel> stream(AnonymizedMapping account) {
+        return mode == Mode.REFERENCE
+                ? transactionRepo.streamByCounterpartyId(account.getId())
+                : transactionRepo.streamByAccountNumber(account.getAnonymizedValue());
+    }
+
+    // Account numbers of a single row, whichever mode it was written in
+    public String originalSource(TransactionModel row) {
+        return row.getSourceCounterpartyId() != null
+                ? anonymizationService.deanonymizeById(row.getSourceCounterpartyId())
+                : anonymizationService.deanonymize(row.getSourceAccountNumber());
+    }
+
+    public String originalTarget(TransactionModel row) {
+        return row.getTargetCounterpartyId() != null
+                ? anonymizationService.deanonymizeById(row.getTargetCounterpartyId())
+                : anonymizationService.deanonymize(row.getTargetAccountNumber());
+    }
+}
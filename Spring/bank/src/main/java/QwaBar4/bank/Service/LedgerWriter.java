@@ -0,0 +1,298 @@
+package QwaBar4.bank.Service;
+
+import QwaBar4.bank.Model.TransactionModel;
+import QwaBar4.bank.Model.TransactionModelRepository;
+import com.google.common.util.concurrent.Uninterruptibles;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Connection;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the transfer, deposit and withdrawal units of work and writes their ledger rows.
+ *
+ * By default each unit runs in its own transaction through ConcurrencyRetryExecutor, and
+ * append saves the ledger row in it. With group commit enabled, units are handed to a
+ * single writer thread that runs a batch of them, bounded by size and by a microsecond
+ * deadline, in one shared transaction, so many requests share one commit. The balance
+ * change and the ledger row of a unit always commit together, and callers only return
+ * once the transaction holding their unit has committed or rolled back.
+ *
+ * Within a batch each unit runs under its own savepoint, so a unit that fails is undone
+ * without affecting the others. If the batch transaction itself cannot commit, nothing
+ * of it is kept and every unit is run again on its own.
+ */
+@Service
+public class LedgerWriter {
+    private static final Logger logger = LoggerFactory.getLogger(LedgerWriter.class);
+    private static final long ENQUEUE_TIMEOUT_MILLIS = 1000;
+    private static final long STOP_TIMEOUT_MILLIS = 5000;
+
+    private final TransactionModelRepository transactionRepo;
+    private final ConcurrencyRetryExecutor retryExecutor;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean groupCommit;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Unit<?>> queue;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder unitsCommitted = new LongAdder();
+    private final LongAdder unitsFailed = new LongAdder();
+    private final LongAdder batchFallbacks = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile boolean running;
+    private Thread flusher;
+
+    @Autowired
+    public LedgerWriter(TransactionModelRepository transactionRepo,
+                        ConcurrencyRetryExecutor retryExecutor,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${bank.ledger.group-commit.enabled:false}") boolean groupCommit,
+                        @Value("${bank.ledger.group-commit.max-batch-size:64}") int maxBatchSize,
+                        @Value("${bank.ledger.group-commit.max-delay-micros:500}") long maxDelayMicros,
+                        @Value("${bank.ledger.group-commit.max-queued:1024}") int maxQueued) {
+        this.transactionRepo = transactionRepo;
+        this.retryExecutor = retryExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.groupCommit = groupCommit;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, maxDelayMicros));
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, maxQueued));
+    }
+
+    private static final class Unit<T> {
+        private final TransactionCallback<T> work;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private T value;
+
+        private Unit(TransactionCallback<T> work) {
+            this.work = work;
+        }
+
+        private void complete() {
+            result.complete(value);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!groupCommit) {
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::runFlusher, "ledger-group-commit");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (flusher != null) {
+            flusher.join(STOP_TIMEOUT_MILLIS);
+        }
+        // Never started, so nothing of these was written
+        Unit<?> unit;
+        while ((unit = queue.poll()) != null) {
+            unit.result.completeExceptionally(new IllegalStateException("Ledger writer is shutting down"));
+        }
+    }
+
+    /**
+     * Runs the work in a transaction, retrying it like ConcurrencyRetryExecutor.execute, and
+     * returns once that transaction has committed. Inside an existing transaction the work
+     * joins it and the outermost caller commits.
+     */
+    public <T> T execute(Collection<String> accountKeys, TransactionCallback<T> work) {
+        if (!groupCommit || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return retryExecutor.execute(accountKeys, work);
+        }
+        return retryExecutor.retry(accountKeys, () -> submit(work));
+    }
+
+    // Saves the ledger row in the transaction of the current unit of work
+    public TransactionModel append(TransactionModel row) {
+        return transactionRepo.save(row);
+    }
+
+    private <T> T submit(TransactionCallback<T> work) {
+        Unit<T> unit = new Unit<>(work);
+        boolean queued;
+        try {
+            queued = queue.offer(unit, ENQUEUE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while queueing ledger work", e);
+        }
+        if (!queued) {
+            rejected.increment();
+            throw new IllegalStateException("Ledger writer is overloaded, try again later");
+        }
+        if (!running && queue.remove(unit)) {
+            rejected.increment();
+            throw new IllegalStateException("Ledger writer is shutting down");
+        }
+        // No timeout: once queued the unit may commit, so the caller waits for the outcome
+        try {
+            return Uninterruptibles.getUninterruptibly(unit.result);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException("Ledger write failed", e.getCause());
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        long batchCount = batches.sum();
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("groupCommit", groupCommit);
+        metrics.put("queued", queue.size());
+        metrics.put("batches", batchCount);
+        metrics.put("unitsCommitted", unitsCommitted.sum());
+        metrics.put("unitsFailed", unitsFailed.sum());
+        metrics.put("batchFallbacks", batchFallbacks.sum());
+        metrics.put("rejected", rejected.sum());
+        metrics.put("avgBatchSize", batchCount == 0 ? 0 : (double) unitsCommitted.sum() / batchCount);
+        return metrics;
+    }
+
+    private void runFlusher() {
+        List<Unit<?>> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Unit<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Unit<?> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (RuntimeException | Error e) {
+                logger.error("Ledger group commit failed unexpectedly", e);
+                batch.forEach(unit -> unit.result.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Unit<?>> batch) {
+        List<Unit<?>> applied = new ArrayList<>(batch.size());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Unit<?> unit : batch) {
+                    if (apply(unit, status)) {
+                        applied.add(unit);
+                    } else if (status.isRollbackOnly()) {
+                        throw new IllegalStateException("Batch transaction was marked rollback-only");
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // Nothing of the batch committed; settle every unit still waiting on its own
+            batchFallbacks.increment();
+            logger.warn("Group commit of {} units failed, running them one by one", batch.size(), e);
+            for (Unit<?> unit : batch) {
+                if (!unit.result.isDone()) {
+                    runAlone(unit);
+                }
+            }
+            return;
+        }
+        batches.increment();
+        unitsCommitted.add(applied.size());
+        applied.forEach(Unit::complete);
+    }
+
+    // Runs one unit under a savepoint of the batch transaction; false when it failed and was undone
+    private <T> boolean apply(Unit<T> unit, TransactionStatus status) {
+        Session session = entityManager.unwrap(Session.class);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        Savepoint savepoint = session.doReturningWork(Connection::setSavepoint);
+        try {
+            T value = unit.work.doInTransaction(status);
+            entityManager.flush();
+            session.doWork(connection -> connection.releaseSavepoint(savepoint));
+            unit.value = value;
+            return true;
+        } catch (RuntimeException | Error e) {
+            session.doWork(connection -> connection.rollback(savepoint));
+            // Drop what the unit left behind: its entity changes and its after-commit callbacks
+            entityManager.clear();
+            TransactionSynchronizationManager.clearSynchronization();
+            TransactionSynchronizationManager.initSynchronization();
+            synchronizations.forEach(TransactionSynchronizationManager::registerSynchronization);
+
+            unitsFailed.increment();
+            unit.result.completeExceptionally(translate(e));
+            return false;
+        }
+    }
+
+    // Flush failures surface as JPA exceptions; retries only recognise Spring's
+    private static Throwable translate(Throwable e) {
+        if (e instanceof RuntimeException runtime) {
+            RuntimeException translated = EntityManagerFactoryUtils.convertJpaAccessExceptionIfPossible(runtime);
+            return translated != null ? translated : runtime;
+        }
+        return e;
+    }
+
+    private <T> void runAlone(Unit<T> unit) {
+        try {
+            unit.value = transactionTemplate.execute(unit.work);
+            unitsCommitted.increment();
+            unit.complete();
+        } catch (RuntimeException | Error e) {
+            unitsFailed.increment();
+            unit.result.completeExceptionally(e);
+        }
+    }
+}
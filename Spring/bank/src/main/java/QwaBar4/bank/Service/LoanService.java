@@ -3,7 +3,9 @@ package QwaBar4.bank.Service;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import QwaBar4.bank.DTO.*;
@@ -24,18 +26,21 @@ public class LoanService {
     private final PaymentModelRepository paymentRepository;
     private final TransactionService transactionService;
     private final AccountNumberUtils accountNumberUtils;
+    private final ConcurrencyRetryExecutor retryExecutor;
 
     @Autowired
     public LoanService(LoanModelRepository loanRepository,
                      AccountModelRepository accountRepository,
                      PaymentModelRepository paymentRepository,
                      TransactionService transactionService,
-                     AccountNumberUtils accountNumberUtils) {
+                     AccountNumberUtils accountNumberUtils,
+                     ConcurrencyRetryExecutor retryExecutor) {
         this.loanRepository = loanRepository;
         this.accountRepository = accountRepository;
         this.paymentRepository = paymentRepository;
         this.transactionService = transactionService;
         this.accountNumberUtils = accountNumberUtils;
+        this.retryExecutor = retryExecutor;
     }
 
     @Transactional
@@ -69,12 +74,14 @@ public class LoanService {
         );
     }
     
+    @Transactional(readOnly = true)
     public List<LoanResponseDTO> getAllLoans() {
         return loanRepository.findAll().stream()
             .map(this::convertToResponseDTO)
             .collect(Collectors.toList());
     }
 	
+	@Transactional(readOnly = true)
 	public List<LoanResponseDTO> getLoansForCurrentUser() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         String username = auth.getName();
@@ -84,6 +91,7 @@ public class LoanService {
             .collect(Collectors.toList());
     }
 	
+	@Transactional(readOnly = true)
 	public List<LoanResponseDTO> getLoansByUserId(Long userId) {
 		return loanRepository.findByAccount_User_Id(userId).stream()
 		    .map(this::convertToResponseDTO)
@@ -131,69 +139,73 @@ public class LoanService {
         return convertToResponseDTO(updatedLoan);
     }
 		
-	@Transactional
+	@Transactional(propagation = Propagation.SUPPORTS)
 	public PaymentResponseDTO recordPayment(Long loanId, LoanPaymentDTO paymentDTO) {
-		Authentication auth = SecurityContextHolder.getContext().getAuthentication();
 		String accNumber = accountNumberUtils.convertFormattedNumberToUuid(paymentDTO.getAccountNumber());
-		
-		AccountModel account = accountRepository.findByAccountNumber(accNumber)
-		    .orElseThrow(() -> new IllegalArgumentException("Account not found"));
-
-		LoanModel loan = loanRepository.findById(loanId)
-		    .orElseThrow(() -> new IllegalArgumentException("Loan not found"));
 
-		if (!loan.getStatus().equals("APPROVED")) {
-		    throw new IllegalArgumentException("Loan is not approved for payments");
-		}
-
-		if (account.getBalance().compareTo(paymentDTO.getAmount()) < 0) {
-		    throw new IllegalArgumentException("Insufficient account balance");
-		}
-		
-		if (loan.getRemainingBalance().compareTo(paymentDTO.getAmount()) < 0){
-		    throw new IllegalArgumentException("You cant pay more");
-		}
-
-		try {
-		    transactionService.processWithdrawal(
-		        accNumber,
-		        paymentDTO.getAmount(),
-		        "Loan payment for loan #" + loanId,
-		        accNumber
-		    );
-
-		    PaymentModel payment = new PaymentModel();
-		    payment.setLoan(loan);
-		    payment.setPaymentNumber(paymentDTO.getPaymentNumber());
-		    payment.setAmount(paymentDTO.getAmount());
-		    payment.setPaymentDate(LocalDateTime.now());
-		    paymentRepository.save(payment);
-
-		    BigDecimal newBalance = loan.getRemainingBalance().subtract(paymentDTO.getAmount());
-		    loan.setRemainingBalance(newBalance);
-
-		    loan.getPaymentSchedule().stream()
-		        .filter(p -> p.getPaymentNumber() == paymentDTO.getPaymentNumber())
-		        .findFirst()
-		        .ifPresent(p -> p.setPaid(true));
-
-		    if (newBalance.compareTo(BigDecimal.ZERO) <= 0) {
-		        loan.setStatus("PAID");
-		    }
-
-		    loanRepository.save(loan);
-
-		    return new PaymentResponseDTO(
-		        loanId,
-		        paymentDTO.getPaymentNumber(),
-		        paymentDTO.getAmount(),
-		        LocalDateTime.now(),
-		        "COMPLETED",
-		        newBalance
-		    );
-		} catch (Exception e) {
-		    throw new IllegalArgumentException("Payment processing failed: " + e.getMessage());
-		}
+		return retryExecutor.execute(List.of(accNumber), status -> {
+			AccountModel account = accountRepository.findByAccountNumber(accNumber)
+			    .orElseThrow(() -> new IllegalArgumentException("Account not found"));
+
+			LoanModel loan = loanRepository.findById(loanId)
+			    .orElseThrow(() -> new IllegalArgumentException("Loan not found"));
+
+			if (!loan.getStatus().equals("APPROVED")) {
+			    throw new IllegalArgumentException("Loan is not approved for payments");
+			}
+
+			if (account.getTotalBalance().compareTo(paymentDTO.getAmount()) < 0) {
+			    throw new IllegalArgumentException("Insufficient account balance");
+			}
+			
+			if (loan.getRemainingBalance().compareTo(paymentDTO.getAmount()) < 0){
+			    throw new IllegalArgumentException("You cant pay more");
+			}
+
+			try {
+			    transactionService.processWithdrawal(
+			        accNumber,
+			        paymentDTO.getAmount(),
+			        "Loan payment for loan #" + loanId,
+			        accNumber,
+			        false
+			    );
+
+			    PaymentModel payment = new PaymentModel();
+			    payment.setLoan(loan);
+			    payment.setPaymentNumber(paymentDTO.getPaymentNumber());
+			    payment.setAmount(paymentDTO.getAmount());
+			    payment.setPaymentDate(LocalDateTime.now());
+			    paymentRepository.save(payment);
+
+			    BigDecimal newBalance = loan.getRemainingBalance().subtract(paymentDTO.getAmount());
+			    loan.setRemainingBalance(newBalance);
+
+			    loan.getPaymentSchedule().stream()
+			        .filter(p -> p.getPaymentNumber() == paymentDTO.getPaymentNumber())
+			        .findFirst()
+			        .ifPresent(p -> p.setPaid(true));
+
+			    if (newBalance.compareTo(BigDecimal.ZERO) <= 0) {
+			        loan.setStatus("PAID");
+			    }
+
+			    loanRepository.save(loan);
+
+			    return new PaymentResponseDTO(
+			        loanId,
+			        paymentDTO.getPaymentNumber(),
+			        paymentDTO.getAmount(),
+			        LocalDateTime.now(),
+			        "COMPLETED",
+			        newBalance
+			    );
+			} catch (ConcurrencyFailureException e) {
+			    throw e;
+			} catch (Exception e) {
+			    throw new IllegalArgumentException("Payment processing failed: " + e.getMessage());
+			}
+		});
 	}
 
     private LoanResponseDTO convertToResponseDTO(LoanModel loan) {
@@ -0,0 +1,146 @@
+package QwaBar4.bank.Service;
+
+import QwaBar4.bank.DTO.MonthlySummaryDTO;
+import QwaBar4.bank.Model.AccountMonthlySummaryRepository;
+import QwaBar4.bank.Model.JournalPosting;
+import QwaBar4.bank.Model.UserModel;
+import QwaBar4.bank.Model.UserModelRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains account_monthly_summary from journal postings. JournalService calls apply for
+ * every set of postings it writes, so the aggregates commit or roll back together with
+ * the balance change.
+ *
+ * A single summary row per month would put every credit of a hot account back on one row
+ * lock, which is what its balance slots avoid. Hot accounts therefore add to a random one
+ * of as many summary slots as they have balance slots, and getSummary sums the slots.
+ */
+@Service
+public class MonthlySummaryService {
+    public static final int MAX_MONTHS = 120;
+
+    private final AccountMonthlySummaryRepository summaryRepo;
+    private final UserModelRepository userRepo;
+    private final HotAccountService hotAccountService;
+
+    @Autowired
+    public MonthlySummaryService(AccountMonthlySummaryRepository summaryRepo,
+                                 UserModelRepository userRepo,
+                                 HotAccountService hotAccountService) {
+        this.summaryRepo = summaryRepo;
+        this.userRepo = userRepo;
+        this.hotAccountService = hotAccountService;
+    }
+
+    public void apply(List<JournalPosting> postings) {
+        // One upsert per (account, month, type, slot), in a fixed order so concurrent
+        // movements touching the same summary rows lock them in the same sequence
+        Map<Long, Integer> slots = new HashMap<>();
+        Map<Key, Totals> totals = new TreeMap<>();
+        for (JournalPosting posting : postings) {
+            if (posting.getAccountId() == null) {
+                continue;
+            }
+            int slot = slots.computeIfAbsent(posting.getAccountId(), this::pickSlot);
+            Key key = new Key(posting.getAccountId(),
+                    posting.getPostedAt().toLocalDate().withDayOfMonth(1),
+                    posting.getEntryType(),
+                    slot);
+            totals.computeIfAbsent(key, k -> new Totals()).add(posting.getAmount());
+        }
+        totals.forEach((key, value) -> summaryRepo.add(key.accountId, key.month, key.type, key.slot,
+                value.inflow, value.outflow, value.count));
+    }
+
+    private int pickSlot(Long accountId) {
+        int slotCount = hotAccountService.slotCount(accountId);
+        return slotCount > 1 ? ThreadLocalRandom.current().nextInt(slotCount) : 0;
+    }
+
+    @Transactional(readOnly = true)
+    public List<MonthlySummaryDTO> getSummary(String username, int months) {
+        UserModel user = userRepo.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        if (user.getAccount() == null) {
+            throw new RuntimeException("Account not found");
+        }
+
+        int window = Math.max(1, Math.min(months, MAX_MONTHS));
+        LocalDate fromMonth = LocalDate.now().withDayOfMonth(1).minusMonths(window - 1);
+        return summaryRepo.sumByMonthAndType(user.getAccount().getId(), fromMonth).stream()
+                .map(row -> new MonthlySummaryDTO((LocalDate) row[0], (String) row[1],
+                        (BigDecimal) row[2], (BigDecimal) row[3], ((Number) row[4]).longValue()))
+                .collect(Collectors.toList());
+    }
+
+    private static final class Key implements Comparable<Key> {
+        private final Long accountId;
+        private final LocalDate month;
+        private final String type;
+        private final int slot;
+
+        private Key(Long accountId, LocalDate month, String type, int slot) {
+            this.accountId = accountId;
+            this.month = month;
+            this.type = type;
+            this.slot = slot;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int byAccount = accountId.compareTo(other.accountId);
+            if (byAccount != 0) {
+                return byAccount;
+            }
+            int byMonth = month.compareTo(other.month);
+            if (byMonth != 0) {
+                return byMonth;
+            }
+            int byType = type.compareTo(other.type);
+            return byType != 0 ? byType : Integer.compare(slot, other.slot);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return accountId.equals(other.accountId) && month.equals(other.month) && type.equals(other.type)
+                    && slot == other.slot;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(accountId, month, type, slot);
+        }
+    }
+
+    private static final class Totals {
+        private BigDecimal inflow = BigDecimal.ZERO;
+        private BigDecimal outflow = BigDecimal.ZERO;
+        private long count;
+
+        private void add(BigDecimal signedAmount) {
+            if (signedAmount.signum() >= 0) {
+                inflow = inflow.add(signedAmount);
+            } else {
+                outflow = outflow.add(signedAmount.negate());
+            }
+            count++;
+        }
+    }
+}
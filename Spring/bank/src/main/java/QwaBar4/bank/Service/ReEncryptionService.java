@@ -0,0 +1,274 @@
+package QwaBar4.bank.Service;
+
+import com.google.common.util.concurrent.RateLimiter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rewrites encrypted columns under the active data key after a rotation, so old data keys
+ * (and the original single-key format) can eventually be retired.
+ *
+ * Walks each table in id order, a chunk at a time, and records how far it got in
+ * reencryption_progress after every chunk, so a restart or stop resumes where it left off.
+ * A pass belongs to one data key; rotating again starts the next pass from the beginning.
+ * It starts only once every instance has picked the key up, one keyring refresh interval
+ * after the rotation, so no row encrypted under the old key can land behind the scan after
+ * a table is marked complete.
+ * Rows are throttled by bank.encryption.reencryption.rows-per-second, and each value is only
+ * replaced if it still holds the ciphertext that was read, so concurrent updates win.
+ */
+@Service
+public class ReEncryptionService {
+    private static final Logger logger = LoggerFactory.getLogger(ReEncryptionService.class);
+    // Covers the commit of the rotation and a refresh already under way when it committed
+    private static final long KEY_ADOPTION_MARGIN_MILLIS = 5000;
+
+    private static final class Target {
+        private final String table;
+        private final List<String> columns;
+
+        private Target(String table, List<String> columns) {
+            this.table = table;
+            this.columns = columns;
+        }
+    }
+
+    private static final List<Target> TARGETS = List.of(
+            new Target("users", List.of("first_name", "last_name", "middle_name", "passport_series", "passport_number")),
+            new Target("transactions", List.of("encrypted_description")),
+            new Target("audit_log", List.of("details")),
+            new Target("anonymization_mappings", List.of("encrypted_original")));
+
+    private final EncryptionService encryptionService;
+    private final EncryptionKeyring keyring;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate writeTransaction;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final RateLimiter rateLimiter;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "re-encryption");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean stopRequested;
+    private volatile String currentTable;
+    private final LongAdder rowsScanned = new LongAdder();
+    private final LongAdder valuesReEncrypted = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    @Autowired
+    public ReEncryptionService(EncryptionService encryptionService,
+                               EncryptionKeyring keyring,
+                               JdbcTemplate jdbcTemplate,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${bank.encryption.reencryption.enabled:false}") boolean enabled,
+                               @Value("${bank.encryption.reencryption.chunk-size:500}") int chunkSize,
+                               @Value("${bank.encryption.reencryption.rows-per-second:500}") double rowsPerSecond) {
+        this.encryptionService = encryptionService;
+        this.keyring = keyring;
+        this.jdbcTemplate = jdbcTemplate;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.rateLimiter = RateLimiter.create(Math.max(1, rowsPerSecond));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopRequested = true;
+        worker.shutdown();
+    }
+
+    // Runs on its own thread so a long pass never holds up the other scheduled jobs
+    @Scheduled(fixedDelayString = "${bank.encryption.reencryption.interval-ms:300000}")
+    public void scheduledRun() {
+        if (enabled && keyring.isEnabled()) {
+            start();
+        }
+    }
+
+    // false when a pass is already running
+    public boolean start() {
+        if (!keyring.isEnabled()) {
+            throw new IllegalStateException("Envelope encryption is not enabled");
+        }
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        stopRequested = false;
+        worker.execute(this::runPass);
+        return true;
+    }
+
+    // The current chunk finishes and its progress is saved
+    public void stop() {
+        stopRequested = true;
+    }
+
+    private void runPass() {
+        try {
+            int dataKeyId = keyring.active().getId();
+            if (!awaitKeyAdopted(dataKeyId)) {
+                return;
+            }
+            for (Target target : TARGETS) {
+                if (stopRequested) {
+                    break;
+                }
+                currentTable = target.table;
+                reEncrypt(target, dataKeyId);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Re-encryption pass failed, will resume from the last saved chunk", e);
+        } finally {
+            currentTable = null;
+            running.set(false);
+        }
+    }
+
+    private void reEncrypt(Target target, int dataKeyId) {
+        Long afterId = resumeFrom(target.table, dataKeyId);
+        if (afterId == null) {
+            return;
+        }
+        String select = "SELECT id, " + String.join(", ", target.columns) +
+                " FROM " + target.table + " WHERE id > ? ORDER BY id LIMIT ?";
+
+        while (!stopRequested) {
+            List<Map<String, Object>> rows = jdbcTemplate.queryForList(select, afterId, chunkSize);
+            if (rows.isEmpty()) {
+                saveProgress(target.table, dataKeyId, afterId, true);
+                logger.info("Re-encrypted {} under data key {}", target.table, dataKeyId);
+                return;
+            }
+            rateLimiter.acquire(rows.size());
+
+            Map<String, List<Object[]>> updates = new LinkedHashMap<>();
+            for (Map<String, Object> row : rows) {
+                long id = ((Number) row.get("id")).longValue();
+                for (String column : target.columns) {
+                    String value = (String) row.get(column);
+                    if (!encryptionService.needsReEncryption(value)) {
+                        continue;
+                    }
+                    try {
+                        String reEncrypted = encryptionService.encrypt(encryptionService.decrypt(value));
+                        updates.computeIfAbsent(column, c -> new ArrayList<>()).add(new Object[]{reEncrypted, id, value});
+                    } catch (RuntimeException e) {
+                        // Left as it is; the value was unreadable before and stays so
+                        failures.increment();
+                    }
+                }
+            }
+            long lastId = ((Number) rows.get(rows.size() - 1).get("id")).longValue();
+
+            writeTransaction.executeWithoutResult(status -> {
+                updates.forEach((column, batch) -> {
+                    int[] counts = jdbcTemplate.batchUpdate("UPDATE " + target.table + " SET " + column +
+                            " = ? WHERE id = ? AND " + column + " = ?", batch);
+                    for (int count : counts) {
+                        if (count == 0) {
+                            conflicts.increment();
+                        } else {
+                            valuesReEncrypted.increment();
+                        }
+                    }
+                });
+                saveProgress(target.table, dataKeyId, lastId, false);
+            });
+            rowsScanned.add(rows.size());
+            afterId = lastId;
+        }
+    }
+
+    // false when stopped while waiting
+    private boolean awaitKeyAdopted(int dataKeyId) {
+        Long age = jdbcTemplate.queryForObject(
+                "SELECT (EXTRACT(EPOCH FROM now() - created_at) * 1000)::bigint FROM encryption_keys WHERE id = ?",
+                Long.class, dataKeyId);
+        long deadline = System.currentTimeMillis() + keyring.getRefreshMillis() + KEY_ADOPTION_MARGIN_MILLIS
+                - (age != null ? age : 0);
+        if (deadline > System.currentTimeMillis()) {
+            logger.info("Waiting {} ms for all instances to use data key {}", deadline - System.currentTimeMillis(), dataKeyId);
+        }
+        try {
+            for (long remaining = deadline - System.currentTimeMillis(); remaining > 0 && !stopRequested;
+                 remaining = deadline - System.currentTimeMillis()) {
+                Thread.sleep(Math.min(remaining, 1000));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !stopRequested;
+    }
+
+    // Id to continue after; null when the table is already done for this data key
+    private Long resumeFrom(String table, int dataKeyId) {
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT data_key_id, last_id, completed FROM reencryption_progress WHERE table_name = ?", table);
+        if (rows.isEmpty() || ((Number) rows.get(0).get("data_key_id")).intValue() != dataKeyId) {
+            return 0L;
+        }
+        Map<String, Object> progress = rows.get(0);
+        return Boolean.TRUE.equals(progress.get("completed")) ? null : ((Number) progress.get("last_id")).longValue();
+    }
+
+    private void saveProgress(String table, int dataKeyId, long lastId, boolean completed) {
+        Runnable save = () -> jdbcTemplate.update(
+                "INSERT INTO reencryption_progress (table_name, data_key_id, last_id, completed, updated_at) " +
+                "VALUES (?, ?, ?, ?, now()) " +
+                "ON CONFLICT (table_name) DO UPDATE SET data_key_id = EXCLUDED.data_key_id, " +
+                "last_id = EXCLUDED.last_id, completed = EXCLUDED.completed, updated_at = EXCLUDED.updated_at",
+                table, dataKeyId, lastId, completed);
+        if (completed) {
+            writeTransaction.executeWithoutResult(status -> save.run());
+        } else {
+            save.run();
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("scheduled", enabled);
+        metrics.put("running", running.get());
+        metrics.put("currentTable", currentTable);
+        metrics.put("rowsPerSecond", rateLimiter.getRate());
+        metrics.put("rowsScanned", rowsScanned.sum());
+        metrics.put("valuesReEncrypted", valuesReEncrypted.sum());
+        metrics.put("conflicts", conflicts.sum());
+        metrics.put("failures", failures.sum());
+        if (keyring.isEnabled()) {
+            Map<String, Object> tables = new LinkedHashMap<>();
+            for (Map<String, Object> row : jdbcTemplate.queryForList(
+                    "SELECT table_name, data_key_id, last_id, completed FROM reencryption_progress ORDER BY table_name")) {
+                Map<String, Object> progress = new LinkedHashMap<>(row);
+                progress.remove("table_name");
+                tables.put((String) row.get("table_name"), progress);
+            }
+            metrics.put("progress", tables);
+        }
+        return metrics;
+    }
+}
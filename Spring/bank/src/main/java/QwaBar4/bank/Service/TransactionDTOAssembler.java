@@ -0,0 +1,175 @@
+package QwaBar4.bank.Service;
+
+import QwaBar4.bank.DTO.TransactionDTO;
+import QwaBar4.bank.Model.AccountModelRepository;
+import QwaBar4.bank.Model.AnonymizedMapping;
+import QwaBar4.bank.Model.TransactionModel;
+import QwaBar4.bank.Model.UserModel;
+import QwaBar4.bank.Model.UserModelRepository;
+import QwaBar4.bank.Utils.AccountNumberUtils;
+import com.google.common.collect.Iterables;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns a page of ledger rows into TransactionDTOs with a fixed number of queries: IN
+ * queries for the anonymization mappings (by token, and by id for rows written in reference
+ * storage mode), one for the account owners and one for the current user, however many rows
+ * the page holds.
+ */
+@Service
+public class TransactionDTOAssembler {
+
+    public enum AccountNumbers {
+        // Customer-facing base62 numbers
+        FORMATTED,
+        // Internal ACC-<uuid> numbers
+        RAW,
+        // Anonymized tokens as stored in the ledger
+        ANONYMIZED
+    }
+
+    private final AnonymizationService anonymizationService;
+    private final EncryptionService encryptionService;
+    private final AccountModelRepository accountRepo;
+    private final UserModelRepository userRepo;
+
+    @Autowired
+    public TransactionDTOAssembler(AnonymizationService anonymizationService,
+                                   EncryptionService encryptionService,
+                                   AccountModelRepository accountRepo,
+                                   UserModelRepository userRepo) {
+        this.anonymizationService = anonymizationService;
+        this.encryptionService = encryptionService;
+        this.accountRepo = accountRepo;
+        this.userRepo = userRepo;
+    }
+
+    public TransactionDTO assemble(TransactionModel transaction) {
+        return assemble(List.of(transaction), AccountNumbers.FORMATTED).get(0);
+    }
+
+    public List<TransactionDTO> assemble(List<TransactionModel> transactions, AccountNumbers format) {
+        if (transactions.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return assemble(transactions, format, currentUserAccount());
+    }
+
+    /**
+     * Variant for callers that assemble many chunks for the same user, or run outside the
+     * request thread; currentAccount is the raw number used to sign outgoing transfers.
+     */
+    public List<TransactionDTO> assemble(List<TransactionModel> transactions, AccountNumbers format,
+                                         String currentAccount) {
+        if (transactions.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Set<String> anonymized = new HashSet<>();
+        Set<Long> references = new HashSet<>();
+        for (TransactionModel transaction : transactions) {
+            anonymized.add(transaction.getSourceAccountNumber());
+            anonymized.add(transaction.getTargetAccountNumber());
+            references.add(transaction.getSourceCounterpartyId());
+            references.add(transaction.getTargetCounterpartyId());
+        }
+        anonymized.remove(null);
+        references.remove(null);
+        Map<String, String> rawNumbers = new HashMap<>(anonymizationService.deanonymizeAll(anonymized));
+
+        // Rows in reference mode carry only the mapping id; give them their token back
+        Map<Long, String> tokens = new HashMap<>();
+        Collection<AnonymizedMapping> mappings = anonymizationService.findMappingsById(references).values();
+        for (AnonymizedMapping mapping : mappings) {
+            tokens.put(mapping.getId(), mapping.getAnonymizedValue());
+        }
+        rawNumbers.putAll(anonymizationService.originals(mappings));
+        Map<String, String> owners = findOwners(rawNumbers.values());
+
+        List<TransactionDTO> result = new ArrayList<>(transactions.size());
+        for (TransactionModel transaction : transactions) {
+            String sourceToken = token(transaction.getSourceAccountNumber(), transaction.getSourceCounterpartyId(), tokens);
+            String targetToken = token(transaction.getTargetAccountNumber(), transaction.getTargetCounterpartyId(), tokens);
+            String source = rawNumbers.get(sourceToken);
+            String target = rawNumbers.get(targetToken);
+
+            TransactionDTO dto = new TransactionDTO();
+            dto.setId(transaction.getId());
+            dto.setType(transaction.getType());
+            dto.setStatus(transaction.getStatus());
+            dto.setTimestamp(transaction.getTimestamp());
+            dto.setDescription(encryptionService.decrypt(transaction.getEncryptedDescription()));
+            dto.setSourceAccountNumber(present(sourceToken, source, format));
+            dto.setTargetAccountNumber(present(targetToken, target, format));
+            dto.setSourceAccountOwner(owners.getOrDefault(source, "Unknown"));
+            dto.setTargetAccountOwner(owners.getOrDefault(target, "Unknown"));
+
+            boolean isOutgoing = source != null && source.equals(currentAccount);
+            if ("TRANSFER".equals(transaction.getType()) && isOutgoing) {
+                dto.setAmount(transaction.getAmount().negate());
+            } else {
+                dto.setAmount(transaction.getAmount());
+            }
+            result.add(dto);
+        }
+        return result;
+    }
+
+    private String token(String stored, Long reference, Map<Long, String> tokens) {
+        return reference != null ? tokens.get(reference) : stored;
+    }
+
+    private Map<String, String> findOwners(Collection<String> rawNumbers) {
+        Set<String> accountNumbers = new HashSet<>();
+        for (String rawNumber : rawNumbers) {
+            if (rawNumber.startsWith("ACC-")) {
+                accountNumbers.add(rawNumber);
+            }
+        }
+
+        Map<String, String> owners = new HashMap<>();
+        for (List<String> chunk : Iterables.partition(accountNumbers, 1000)) {
+            for (Object[] row : accountRepo.findOwnersByAccountNumberIn(chunk)) {
+                owners.put((String) row[0], (String) row[1]);
+            }
+        }
+        return owners;
+    }
+
+    // Raw number of the authenticated user's account
+    public String currentUserAccount() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null) {
+            return null;
+        }
+        return userRepo.findByUsername(authentication.getName())
+                .map(UserModel::getAccount)
+                .map(account -> AccountNumberUtils.convertFormattedNumberToUuid(account.getAccountNumber()))
+                .orElse(null);
+    }
+
+    private String present(String anonymized, String raw, AccountNumbers format) {
+        if (anonymized == null) {
+            return null;
+        }
+        switch (format) {
+            case ANONYMIZED:
+                return anonymized;
+            case RAW:
+                return raw;
+            default:
+                return raw.startsWith("ACC-") ? AccountNumberUtils.convertUuidToFormattedNumber(raw) : raw;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package QwaBar4.bank.Service;
+
+import QwaBar4.bank.DTO.TransactionDTO;
+import QwaBar4.bank.Model.AnonymizedMapping;
+import QwaBar4.bank.Model.TransactionModel;
+import QwaBar4.bank.Model.UserModel;
+import QwaBar4.bank.Model.UserModelRepository;
+import QwaBar4.bank.Utils.AccountNumberUtils;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Iterators;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Streams a user's whole history to the response. Rows are read through a forward-only
+ * cursor and assembled, written and detached in chunks, so memory use stays flat no matter
+ * how long the history is.
+ */
+@Service
+public class TransactionExportService {
+    private static final int CHUNK_SIZE = 200;
+    private static final String CSV_HEADER =
+            "id,timestamp,type,status,amount,sourceAccountNumber,sourceAccountOwner," +
+            "targetAccountNumber,targetAccountOwner,description";
+
+    public enum Format { NDJSON, CSV }
+
+    private final UserModelRepository userRepo;
+    private final LedgerCounterparties counterparties;
+    private final TransactionDTOAssembler dtoAssembler;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    public TransactionExportService(UserModelRepository userRepo,
+                                    LedgerCounterparties counterparties,
+                                    TransactionDTOAssembler dtoAssembler,
+                                    ObjectMapper objectMapper,
+                                    PlatformTransactionManager transactionManager) {
+        this.userRepo = userRepo;
+        this.counterparties = counterparties;
+        this.dtoAssembler = dtoAssembler;
+        this.objectMapper = objectMapper;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    // Resolves the account up front, on the request thread; the returned body runs later
+    public StreamingResponseBody export(String username, Format format) {
+        UserModel user = userRepo.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        if (user.getAccount() == null) {
+            throw new RuntimeException("Account not found");
+        }
+        String accountNumber = AccountNumberUtils.convertFormattedNumberToUuid(user.getAccount().getAccountNumber());
+        AnonymizedMapping account = counterparties.find(accountNumber).orElse(null);
+
+        return out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            if (format == Format.CSV) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+            try {
+                readOnlyTransaction.executeWithoutResult(status -> {
+                    if (account == null) {
+                        return;
+                    }
+                    try (Stream<TransactionModel> rows = counterparties.stream(account)) {
+                        Iterator<List<TransactionModel>> chunks = Iterators.partition(rows.iterator(), CHUNK_SIZE);
+                        while (chunks.hasNext()) {
+                            List<TransactionModel> chunk = chunks.next();
+                            List<TransactionDTO> dtos = dtoAssembler.assemble(
+                                    chunk, TransactionDTOAssembler.AccountNumbers.FORMATTED, accountNumber);
+                            // Rows already written are not needed by the persistence context
+                            entityManager.clear();
+                            for (TransactionDTO dto : dtos) {
+                                writeRow(writer, dto, format);
+                            }
+                            writer.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.flush();
+        };
+    }
+
+    private void writeRow(Writer writer, TransactionDTO dto, Format format) throws IOException {
+        if (format == Format.NDJSON) {
+            writer.write(objectMapper.writeValueAsString(dto));
+        } else {
+            writer.write(String.valueOf(dto.getId()));
+            writer.write(',');
+            writer.write(csv(dto.getTimestamp()));
+            writer.write(',');
+            writer.write(csv(dto.getType()));
+            writer.write(',');
+            writer.write(csv(dto.getStatus()));
+            writer.write(',');
+            writer.write(csv(dto.getAmount()));
+            writer.write(',');
+            writer.write(csv(dto.getSourceAccountNumber()));
+            writer.write(',');
+            writer.write(csv(dto.getSourceAccountOwner()));
+            writer.write(',');
+            writer.write(csv(dto.getTargetAccountNumber()));
+            writer.write(',');
+            writer.write(csv(dto.getTargetAccountOwner()));
+            writer.write(',');
+            writer.write(csv(dto.getDescription()));
+        }
+        writer.write('\n');
+    }
+
+    static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        // Spreadsheets run a cell starting with one of these as a formula; numbers stay as they are
+        if (!(value instanceof Number) && !text.isEmpty() && "=+-@\t\r".indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,224 @@
+package QwaBar4.bank.Service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maintains the monthly range partitions of the transactions table. Partitions are
+ * created a few months ahead so inserts never land in the default partition, and
+ * retention detaches (and optionally drops) whole months instead of deleting rows.
+ *
+ * While this is disabled, rows of months without a partition collect in the default
+ * partition. A month whose rows are in the default partition cannot simply be created,
+ * so they are moved into the new partition first. Retention detaches concurrently, which
+ * PostgreSQL only allows without a default partition; once every month has its own
+ * partition and retention is on, the empty default partition is dropped.
+ *
+ * Does nothing unless enabled and the table is actually partitioned; see
+ * PostgreSQL/partition_transactions.sql for converting an existing table. Failures are
+ * logged and retried on the next run, never thrown out of startup.
+ */
+@Service
+public class TransactionPartitionService {
+    private static final Logger logger = LoggerFactory.getLogger(TransactionPartitionService.class);
+    private static final String PARENT = "transactions";
+    private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("'y'uuuu'm'MM");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate writeTransaction;
+    private final boolean enabled;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final boolean dropDetached;
+
+    @Autowired
+    public TransactionPartitionService(JdbcTemplate jdbcTemplate,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${bank.ledger.partitioning.enabled:false}") boolean enabled,
+                                       @Value("${bank.ledger.partitioning.months-ahead:3}") int monthsAhead,
+                                       @Value("${bank.ledger.partitioning.retention-months:0}") int retentionMonths,
+                                       @Value("${bank.ledger.partitioning.drop-detached:false}") boolean dropDetached) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.writeTransaction = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.monthsAhead = Math.max(1, monthsAhead);
+        this.retentionMonths = Math.max(0, retentionMonths);
+        this.dropDetached = dropDetached;
+    }
+
+    @PostConstruct
+    @Scheduled(cron = "0 30 0 * * *")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            if (!isPartitioned()) {
+                logger.warn("bank.ledger.partitioning is enabled but table {} is not partitioned", PARENT);
+                return;
+            }
+            YearMonth current = YearMonth.now();
+            for (YearMonth month : defaultPartitionMonths()) {
+                createPartition(month);
+            }
+            for (int i = 0; i <= monthsAhead; i++) {
+                createPartition(current.plusMonths(i));
+            }
+            if (retentionMonths > 0) {
+                dropEmptyDefaultPartition();
+                applyRetention(current.minusMonths(retentionMonths));
+            }
+        } catch (RuntimeException e) {
+            logger.error("Ledger partition maintenance failed, will retry on the next run", e);
+        }
+    }
+
+    // Moves the month's rows out of the default partition first, if there are any
+    public void createPartition(YearMonth month) {
+        String name = partitionName(month);
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        String bounds = " FOR VALUES FROM ('" + from + "') TO ('" + to + "')";
+
+        writeTransaction.executeWithoutResult(status -> {
+            String defaultPartition = defaultPartition();
+            if (defaultPartition == null || monthlyPartitions().containsKey(name)) {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + name + " PARTITION OF " + PARENT + bounds);
+                return;
+            }
+            // Blocks inserts into the default partition until the month is attached
+            jdbcTemplate.execute("LOCK TABLE " + defaultPartition + " IN SHARE ROW EXCLUSIVE MODE");
+            String range = " WHERE timestamp >= '" + from + "' AND timestamp < '" + to + "'";
+            Boolean stranded = jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM " + defaultPartition + range + ")", Boolean.class);
+            if (!Boolean.TRUE.equals(stranded)) {
+                jdbcTemplate.execute("CREATE TABLE " + name + " PARTITION OF " + PARENT + bounds);
+                return;
+            }
+            jdbcTemplate.execute("CREATE TABLE " + name + " (LIKE " + PARENT + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS)");
+            int moved = jdbcTemplate.update("INSERT INTO " + name + " SELECT * FROM " + defaultPartition + range);
+            jdbcTemplate.update("DELETE FROM " + defaultPartition + range);
+            jdbcTemplate.execute("ALTER TABLE " + PARENT + " ATTACH PARTITION " + name + bounds);
+            logger.info("Created ledger partition {} with {} rows from {}", name, moved, defaultPartition);
+        });
+    }
+
+    // Detaches every monthly partition that ends on or before the first retained month
+    public List<String> applyRetention(YearMonth oldestRetained) {
+        boolean concurrently = defaultPartition() == null;
+        List<String> removed = new ArrayList<>();
+        for (Map.Entry<String, YearMonth> partition : monthlyPartitions().entrySet()) {
+            if (!partition.getValue().isBefore(oldestRetained)) {
+                continue;
+            }
+            // CONCURRENTLY waits out running queries instead of blocking the table, but must run
+            // outside a transaction; without it the detach briefly locks all of transactions
+            executeAutoCommit("ALTER TABLE " + PARENT + " DETACH PARTITION " + partition.getKey() +
+                    (concurrently ? " CONCURRENTLY" : ""));
+            if (dropDetached) {
+                executeAutoCommit("DROP TABLE " + partition.getKey());
+            }
+            logger.info("{} ledger partition {}", dropDetached ? "Dropped" : "Detached", partition.getKey());
+            removed.add(partition.getKey());
+        }
+        return removed;
+    }
+
+    private void dropEmptyDefaultPartition() {
+        writeTransaction.executeWithoutResult(status -> {
+            String defaultPartition = defaultPartition();
+            if (defaultPartition == null) {
+                return;
+            }
+            jdbcTemplate.execute("LOCK TABLE " + defaultPartition + " IN SHARE ROW EXCLUSIVE MODE");
+            Boolean empty = jdbcTemplate.queryForObject(
+                    "SELECT NOT EXISTS (SELECT 1 FROM " + defaultPartition + ")", Boolean.class);
+            if (Boolean.TRUE.equals(empty)) {
+                jdbcTemplate.execute("DROP TABLE " + defaultPartition);
+                logger.info("Dropped empty default partition {} so retention can detach concurrently", defaultPartition);
+            }
+        });
+    }
+
+    // Months that have rows in the default partition
+    private List<YearMonth> defaultPartitionMonths() {
+        String defaultPartition = defaultPartition();
+        if (defaultPartition == null) {
+            return List.of();
+        }
+        List<LocalDate> months = writeTransaction.execute(status -> jdbcTemplate.queryForList(
+                "SELECT DISTINCT date_trunc('month', timestamp)::date FROM " + defaultPartition, LocalDate.class));
+        return months == null ? List.of() : months.stream().map(YearMonth::from).sorted().toList();
+    }
+
+    private String defaultPartition() {
+        List<String> names = jdbcTemplate.queryForList(
+                "SELECT d.relname FROM pg_partitioned_table pt " +
+                "JOIN pg_class p ON p.oid = pt.partrelid " +
+                "JOIN pg_class d ON d.oid = pt.partdefid WHERE p.relname = ?", String.class, PARENT);
+        return names.isEmpty() ? null : names.get(0);
+    }
+
+    private void executeAutoCommit(String sql) {
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(true);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(sql);
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            return null;
+        });
+    }
+
+    public Map<String, YearMonth> monthlyPartitions() {
+        List<String> names = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i " +
+                "JOIN pg_class c ON c.oid = i.inhrelid " +
+                "JOIN pg_class p ON p.oid = i.inhparent " +
+                "WHERE p.relname = ? ORDER BY c.relname", String.class, PARENT);
+
+        Map<String, YearMonth> partitions = new LinkedHashMap<>();
+        String prefix = PARENT + "_";
+        for (String name : names) {
+            if (name.startsWith(prefix)) {
+                try {
+                    partitions.put(name, YearMonth.parse(name.substring(prefix.length()), SUFFIX));
+                } catch (RuntimeException e) {
+                    // Not a monthly partition, e.g. transactions_default
+                }
+            }
+        }
+        return partitions;
+    }
+
+    private boolean isPartitioned() {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_partitioned_table pt " +
+                "JOIN pg_class c ON c.oid = pt.partrelid WHERE c.relname = ?", Integer.class, PARENT);
+        return count != null && count > 0;
+    }
+
+    private static String partitionName(YearMonth month) {
+        return PARENT + "_" + month.format(SUFFIX);
+    }
+}
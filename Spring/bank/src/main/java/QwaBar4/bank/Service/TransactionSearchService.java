@@ -0,0 +1,140 @@
+package QwaBar4.bank.Service;
+
+import QwaBar4.bank.DTO.TransactionPageDTO;
+import QwaBar4.bank.DTO.TransactionSearchCriteriaDTO;
+import QwaBar4.bank.Model.AnonymizedMapping;
+import QwaBar4.bank.Model.TransactionModel;
+import QwaBar4.bank.Model.TransactionModelRepository;
+import QwaBar4.bank.Model.UserModel;
+import QwaBar4.bank.Model.UserModelRepository;
+import QwaBar4.bank.Utils.AccountNumberUtils;
+import QwaBar4.bank.Utils.TransactionCursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+
+import static QwaBar4.bank.Model.TransactionSpecifications.*;
+
+@Service
+public class TransactionSearchService {
+
+    private final TransactionModelRepository transactionRepo;
+    private final UserModelRepository userRepo;
+    private final LedgerCounterparties counterparties;
+    private final TransactionDTOAssembler dtoAssembler;
+
+    @Autowired
+    public TransactionSearchService(TransactionModelRepository transactionRepo,
+                                    UserModelRepository userRepo,
+                                    LedgerCounterparties counterparties,
+                                    TransactionDTOAssembler dtoAssembler) {
+        this.transactionRepo = transactionRepo;
+        this.userRepo = userRepo;
+        this.counterparties = counterparties;
+        this.dtoAssembler = dtoAssembler;
+    }
+
+    // Searches the caller's own history
+    @Transactional(readOnly = true)
+    public TransactionPageDTO searchForUser(String username, TransactionSearchCriteriaDTO criteria) {
+        UserModel user = userRepo.findByUsername(username)
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        if (user.getAccount() == null) {
+            throw new RuntimeException("Account not found");
+        }
+
+        Optional<AnonymizedMapping> account = findAccount(user.getAccount().getAccountNumber());
+        if (account.isEmpty()) {
+            return new TransactionPageDTO();
+        }
+        return search(account.get(), criteria, TransactionDTOAssembler.AccountNumbers.FORMATTED);
+    }
+
+    // Admin search across the whole ledger, optionally narrowed to one account
+    @Transactional(readOnly = true)
+    public TransactionPageDTO searchAll(String accountNumber, TransactionSearchCriteriaDTO criteria) {
+        AnonymizedMapping account = null;
+        if (accountNumber != null && !accountNumber.isBlank()) {
+            Optional<AnonymizedMapping> found = findAccount(accountNumber);
+            if (found.isEmpty()) {
+                return new TransactionPageDTO();
+            }
+            account = found.get();
+        }
+        return search(account, criteria, TransactionDTOAssembler.AccountNumbers.RAW);
+    }
+
+    private TransactionPageDTO search(AnonymizedMapping account, TransactionSearchCriteriaDTO criteria,
+                                      TransactionDTOAssembler.AccountNumbers format) {
+        if (criteria.getMinAmount() != null && criteria.getMaxAmount() != null
+                && criteria.getMinAmount().compareTo(criteria.getMaxAmount()) > 0) {
+            throw new IllegalArgumentException("minAmount must not exceed maxAmount");
+        }
+        if (criteria.getFrom() != null && criteria.getTo() != null && criteria.getFrom().isAfter(criteria.getTo())) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+
+        TransactionCursor after = TransactionCursor.decode(criteria.getCursor());
+        Specification<TransactionModel> spec = Specification.where(null);
+
+        if (criteria.getCounterparty() != null && !criteria.getCounterparty().isBlank()) {
+            Optional<AnonymizedMapping> counterparty = findAccount(criteria.getCounterparty());
+            if (counterparty.isEmpty()) {
+                return new TransactionPageDTO();
+            }
+            spec = account != null
+                    ? spec.and(counterparties.between(account, counterparty.get()))
+                    : spec.and(counterparties.involves(counterparty.get()));
+        } else if (account != null) {
+            spec = spec.and(counterparties.involves(account));
+        }
+
+        if (criteria.getType() != null && !criteria.getType().isBlank()) {
+            spec = spec.and(hasType(criteria.getType().toUpperCase()));
+        }
+        if (criteria.getStatus() != null && !criteria.getStatus().isBlank()) {
+            spec = spec.and(hasStatus(criteria.getStatus().toUpperCase()));
+        }
+        if (criteria.getMinAmount() != null) {
+            spec = spec.and(amountAtLeast(criteria.getMinAmount()));
+        }
+        if (criteria.getMaxAmount() != null) {
+            spec = spec.and(amountAtMost(criteria.getMaxAmount()));
+        }
+        if (criteria.getFrom() != null) {
+            spec = spec.and(onOrAfter(criteria.getFrom()));
+        }
+        if (criteria.getTo() != null) {
+            spec = spec.and(before(criteria.getTo()));
+        }
+        if (!after.isFirstPage()) {
+            spec = spec.and(olderThan(after.getTimestamp(), after.getId()));
+        }
+
+        Integer limit = criteria.getLimit();
+        int pageSize = limit == null
+                ? TransactionService.DEFAULT_PAGE_SIZE
+                : Math.max(1, Math.min(limit, TransactionService.MAX_PAGE_SIZE));
+
+        // One extra row tells whether another page exists
+        List<TransactionModel> rows = transactionRepo.findNewestFirst(spec, pageSize + 1);
+
+        TransactionPageDTO page = new TransactionPageDTO();
+        page.setHasMore(rows.size() > pageSize);
+        List<TransactionModel> pageRows = page.isHasMore() ? rows.subList(0, pageSize) : rows;
+        page.setTransactions(dtoAssembler.assemble(pageRows, format));
+        if (page.isHasMore()) {
+            TransactionModel last = pageRows.get(pageRows.size() - 1);
+            page.setNextCursor(new TransactionCursor(last.getTimestamp(), last.getId()).encode());
+        }
+        return page;
+    }
+
+    private Optional<AnonymizedMapping> findAccount(String formattedAccountNumber) {
+        return counterparties.find(AccountNumberUtils.convertFormattedNumberToUuid(formattedAccountNumber));
+    }
+}
@@ -4,173 +4,337 @@ import QwaBar4.bank.Model.*;
 import QwaBar4.bank.DTO.*;
 import QwaBar4.bank.Exception.TransactionLimitException;
 import QwaBar4.bank.Utils.AccountNumberUtils;
+import QwaBar4.bank.Utils.TransactionCursor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.Authentication;
 import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
 import java.util.Map;
+import java.util.Optional;
 import java.util.HashMap;
 
 @Service
 public class TransactionService {
 
     private static final double DAILY_TRANSFER_LIMIT = 10000.00;
+    private static final int MAX_BATCH_SIZE = 500;
+    static final int DEFAULT_PAGE_SIZE = 20;
+    static final int MAX_PAGE_SIZE = 100;
 
     private final AccountModelRepository accountRepo;
     private final TransactionModelRepository transactionRepo;
     private final UserModelRepository userRepo;
-    private final AnonymizationService anonymizationService;
+    private final LedgerCounterparties counterparties;
     private final EncryptionService encryptionService;
     private final AccountNumberUtils accountNumberUtils;
+    private final TransferEngine transferEngine;
+    private final LedgerWriter ledgerWriter;
+    private final JournalService journalService;
+    private final HotAccountService hotAccountService;
+    private final TransactionDTOAssembler dtoAssembler;
 
     @Autowired
     public TransactionService(AccountModelRepository accountRepo,
                               TransactionModelRepository transactionRepo,
                               UserModelRepository userRepo,
-                              AnonymizationService anonymizationService,
+                              LedgerCounterparties counterparties,
                               EncryptionService encryptionService,
-                              AccountNumberUtils accountNumberUtils) {
+                              AccountNumberUtils accountNumberUtils,
+                              TransferEngine transferEngine,
+                              LedgerWriter ledgerWriter,
+                              JournalService journalService,
+                              HotAccountService hotAccountService,
+                              TransactionDTOAssembler dtoAssembler) {
         this.accountRepo = accountRepo;
         this.transactionRepo = transactionRepo;
         this.userRepo = userRepo;
-        this.anonymizationService = anonymizationService;
+        this.counterparties = counterparties;
         this.encryptionService = encryptionService;
         this.accountNumberUtils = accountNumberUtils;
+        this.transferEngine = transferEngine;
+        this.ledgerWriter = ledgerWriter;
+        this.journalService = journalService;
+        this.hotAccountService = hotAccountService;
+        this.dtoAssembler = dtoAssembler;
     }
 
-    @Transactional
     public TransactionDTO processTransfer(String sourceAccount, String targetAccount, 
                                          BigDecimal amount, String description, 
                                          String status, String username) {
-        AccountModel source = accountRepo.findByAccountNumber(sourceAccount)
-                .orElseThrow(() -> new RuntimeException("Source account not found"));
+        TransactionModel transaction = transferEngine.execute(List.of(sourceAccount, targetAccount), txStatus -> {
+            Set<String> hot = sourceAccount.equals(targetAccount)
+                    ? Collections.emptySet()
+                    : hotAccountService.hotAmong(List.of(targetAccount));
+            Map<String, AccountModel> accounts = transferEngine.lockAccounts(List.of(sourceAccount, targetAccount), hot);
+
+            AccountModel source = accounts.get(sourceAccount);
+            if (source == null) {
+                throw new RuntimeException("Source account not found");
+            }
 
-        if (!source.getUser().getUsername().equals(username)) {
-            throw new RuntimeException("Unauthorized access to account");
-        }
+            if (!source.getUser().getUsername().equals(username)) {
+                throw new RuntimeException("Unauthorized access to account");
+            }
+
+            AccountModel target = accounts.get(targetAccount);
+            if (target == null) {
+                throw new RuntimeException("Target account not found");
+            }
+
+            if (source.getBalance().compareTo(amount) < 0) {
+                hotAccountService.sweep(source);
+            }
+            if (source.getBalance().compareTo(amount) < 0) {
+                throw new RuntimeException("Insufficient funds");
+            }
+
+            if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+                throw new RuntimeException("Transfer amount must be positive");
+            }
+
+            // Check and count the daily transfer limit on the locked source row
+            countDailyTransfer(source, amount);
 
-        AccountModel target = accountRepo.findByAccountNumber(targetAccount)
-                .orElseThrow(() -> new RuntimeException("Target account not found"));
+            // Deduct amount from source account
+            source.setBalance(source.getBalance().subtract(amount));
+            accountRepo.save(source);
 
-        if (source.getBalance().compareTo(amount) < 0) {
-            throw new RuntimeException("Insufficient funds");
+            // Add amount to target account
+            if (hot.contains(targetAccount)) {
+                hotAccountService.credit(target, targetAccount, amount);
+            } else {
+                target.setBalance(target.getBalance().add(amount));
+                accountRepo.save(target);
+            }
+            journalService.recordTransfer(source.getId(), target.getId(), amount);
+
+            // Create transaction with status
+            TransactionModel created = new TransactionModel();
+            created.setType("TRANSFER");
+            created.setStatus("COMPLETED");
+            created.setAmount(amount);
+            created.setEncryptedDescription(encryptionService.encrypt(description));
+            counterparties.setSource(created, counterparties.resolve(sourceAccount));
+            counterparties.setTarget(created, counterparties.resolve(targetAccount));
+            created.setTimestamp(LocalDateTime.now());
+
+            return ledgerWriter.append(created);
+        });
+        return dtoAssembler.assemble(transaction);
+    }
+
+    /**
+     * Applies every transfer of the batch from one source account in a single transaction.
+     * Items that fail validation are reported as rejected and skipped; the balance and the
+     * daily limit are checked once against the total of the remaining items, and their
+     * ledger rows are written in one JDBC batch.
+     */
+    public BatchTransferResponseDTO processBatchTransfer(String sourceAccount,
+                                                         List<BatchTransferRequestDTO.TransferItemDTO> items,
+                                                         String username) {
+        if (items == null || items.isEmpty()) {
+            throw new RuntimeException("Batch contains no transfers");
+        }
+        if (items.size() > MAX_BATCH_SIZE) {
+            throw new RuntimeException("A batch may contain at most " + MAX_BATCH_SIZE + " transfers");
         }
 
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new RuntimeException("Transfer amount must be positive");
+        List<String> targets = new ArrayList<>(items.size());
+        Set<String> accountNumbers = new LinkedHashSet<>();
+        accountNumbers.add(sourceAccount);
+        for (BatchTransferRequestDTO.TransferItemDTO item : items) {
+            String target = toInternalAccountNumber(item.getTargetAccount());
+            targets.add(target);
+            if (target != null) {
+                accountNumbers.add(target);
+            }
         }
 
-        // Check daily transfer limit
-        BigDecimal dailyTotal = transactionRepo.getDailyTransferTotal(sourceAccount, LocalDateTime.now());
-        if (dailyTotal.add(amount).compareTo(BigDecimal.valueOf(DAILY_TRANSFER_LIMIT)) > 0) {
+        Set<String> hot = hotAccountService.hotAmong(accountNumbers);
+        hot.remove(sourceAccount);
+
+        return transferEngine.execute(accountNumbers, txStatus -> {
+            Map<String, AccountModel> accounts = transferEngine.lockAccounts(accountNumbers, hot);
+
+            AccountModel source = accounts.get(sourceAccount);
+            if (source == null) {
+                throw new RuntimeException("Source account not found");
+            }
+
+            if (!source.getUser().getUsername().equals(username)) {
+                throw new RuntimeException("Unauthorized access to account");
+            }
+
+            BatchTransferResponseDTO response = new BatchTransferResponseDTO();
+            List<TransactionModel> ledger = new ArrayList<>();
+            List<JournalPosting> postings = new ArrayList<>();
+            BigDecimal total = BigDecimal.ZERO;
+            Map<String, AnonymizedMapping> mappings = counterparties.resolveAll(accounts.keySet());
+            AnonymizedMapping sourceMapping = mappings.get(sourceAccount);
+            LocalDateTime now = LocalDateTime.now();
+
+            for (int i = 0; i < items.size(); i++) {
+                BatchTransferRequestDTO.TransferItemDTO item = items.get(i);
+                String target = targets.get(i);
+
+                String rejection = null;
+                if (item.getAmount() == null || item.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+                    rejection = "Transfer amount must be positive";
+                } else if (sourceAccount.equals(target)) {
+                    rejection = "You can't send money to yourself";
+                } else if (target == null || !accounts.containsKey(target)) {
+                    rejection = "Target account not found";
+                }
+
+                if (rejection != null) {
+                    response.getResults().add(new BatchTransferResponseDTO.ItemResultDTO(
+                            i, item.getTargetAccount(), item.getAmount(), "REJECTED", rejection));
+                    continue;
+                }
+
+                AccountModel targetAccount = accounts.get(target);
+                if (hot.contains(target)) {
+                    hotAccountService.credit(targetAccount, target, item.getAmount());
+                } else {
+                    targetAccount.setBalance(targetAccount.getBalance().add(item.getAmount()));
+                }
+                total = total.add(item.getAmount());
+                postings.addAll(journalService.movement(TransactionType.TRANSFER,
+                        source.getId(), JournalService.CUSTOMER,
+                        targetAccount.getId(), JournalService.CUSTOMER,
+                        item.getAmount()));
+
+                TransactionModel created = new TransactionModel();
+                created.setType("TRANSFER");
+                created.setStatus("COMPLETED");
+                created.setAmount(item.getAmount());
+                created.setEncryptedDescription(encryptionService.encrypt(item.getDescription()));
+                counterparties.setSource(created, sourceMapping);
+                counterparties.setTarget(created, mappings.get(target));
+                created.setTimestamp(now);
+                ledger.add(created);
+
+                response.getResults().add(new BatchTransferResponseDTO.ItemResultDTO(
+                        i, item.getTargetAccount(), item.getAmount(), "COMPLETED", null));
+            }
+
+            if (ledger.isEmpty()) {
+                throw new RuntimeException("Batch contains no valid transfers");
+            }
+
+            if (source.getBalance().compareTo(total) < 0) {
+                hotAccountService.sweep(source);
+            }
+            if (source.getBalance().compareTo(total) < 0) {
+                throw new RuntimeException("Insufficient funds");
+            }
+
+            countDailyTransfer(source, total);
+
+            source.setBalance(source.getBalance().subtract(total));
+            accountRepo.saveAll(accounts.values());
+            transactionRepo.batchInsert(ledger);
+            journalService.post(postings);
+
+            response.setTotalAmount(total);
+            response.setNewBalance(source.getBalance());
+            response.setCompleted(ledger.size());
+            response.setRejected(items.size() - ledger.size());
+            return response;
+        });
+    }
+
+    private void countDailyTransfer(AccountModel source, BigDecimal amount) {
+        source.rollDailyTotals(LocalDate.now());
+        BigDecimal limit = source.getDailyTransferLimit() != null
+                ? source.getDailyTransferLimit()
+                : BigDecimal.valueOf(DAILY_TRANSFER_LIMIT);
+        BigDecimal newTotal = source.getDailyTransferTotal().add(amount);
+        if (newTotal.compareTo(limit) > 0) {
             throw new TransactionLimitException("Daily transfer limit exceeded");
         }
+        source.setDailyTransferTotal(newTotal);
+    }
 
-        // Deduct amount from source account
-        source.setBalance(source.getBalance().subtract(amount));
-        accountRepo.save(source);
-
-        // Add amount to target account
-        target.setBalance(target.getBalance().add(amount));
-        accountRepo.save(target);
-
-        // Create transaction with status
-        TransactionModel transaction = new TransactionModel();
-        transaction.setType("TRANSFER");
-        transaction.setStatus("COMPLETED");
-        transaction.setAmount(amount);
-        transaction.setEncryptedDescription(encryptionService.encrypt(description));
-        transaction.setSourceAccountNumber(anonymizationService.anonymize(sourceAccount));
-        transaction.setTargetAccountNumber(anonymizationService.anonymize(targetAccount));
-        transaction.setTimestamp(LocalDateTime.now());
-
-        transactionRepo.save(transaction);
-        return convertToDTO(transaction);
+    private String toInternalAccountNumber(String formattedNumber) {
+        if (formattedNumber == null || formattedNumber.isBlank()) {
+            return null;
+        }
+        try {
+            return accountNumberUtils.convertFormattedNumberToUuid(formattedNumber);
+        } catch (RuntimeException e) {
+            return null;
+        }
     }
 
-    public List<TransactionDTO> getUserTransactions(Long userId) {
+    /**
+     * Returns one page of the user's history, newest first. The cursor is the (timestamp, id)
+     * of the last row of the previous page; a missing cursor starts from the newest row.
+     */
+    @Transactional(readOnly = true)
+    public TransactionPageDTO getUserTransactionsPage(Long userId, String cursor, Integer limit) {
         UserModel user = userRepo.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
-        
-        String userAccountNumber = accountNumberUtils.convertFormattedNumberToUuid(user.getAccount().getAccountNumber());
-        String anonymizedAccount = anonymizationService.anonymize(userAccountNumber);
 
-        List<TransactionModel> transactions = transactionRepo.findBySourceAccountOrTargetAccountOrderByTimestampDesc(
-                anonymizedAccount,
-                anonymizedAccount
-        );
-
-        return transactions.stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        String userAccountNumber = accountNumberUtils.convertFormattedNumberToUuid(user.getAccount().getAccountNumber());
+        Optional<AnonymizedMapping> account = counterparties.find(userAccountNumber);
+
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        TransactionCursor after = TransactionCursor.decode(cursor);
+
+        // One extra row tells whether another page exists
+        List<TransactionModel> rows = account.isEmpty()
+                ? List.of()
+                : counterparties.findPage(account.get(), after.getTimestamp(), after.getId(), pageSize + 1);
+
+        TransactionPageDTO page = new TransactionPageDTO();
+        page.setHasMore(rows.size() > pageSize);
+        List<TransactionModel> pageRows = page.isHasMore() ? rows.subList(0, pageSize) : rows;
+        page.setTransactions(dtoAssembler.assemble(pageRows, TransactionDTOAssembler.AccountNumbers.FORMATTED));
+        if (page.isHasMore()) {
+            TransactionModel last = pageRows.get(pageRows.size() - 1);
+            page.setNextCursor(new TransactionCursor(last.getTimestamp(), last.getId()).encode());
+        }
+        return page;
     }
 
+    @Transactional(readOnly = true)
     public BigDecimal getAccountBalance(String username) {
         UserModel user = userRepo.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found"));
-        return user.getAccount().getBalance();
+        return user.getAccount().getTotalBalance();
     }
 	
+    @Transactional(readOnly = true)
     public BigDecimal getAccountBalanceByNumber(String accountNumber) {
         AccountModel account = accountRepo.findByAccountNumber(accountNumber)
                 .orElseThrow(() -> new RuntimeException("User not found"));
-        return account.getBalance();
+        return account.getTotalBalance();
     }
 
     public List<TransactionDTO> getUserTransactionsById(Long userId) {
+        return getUserTransactionsById(userId, TransactionDTOAssembler.AccountNumbers.RAW);
+    }
+
+    @Transactional(readOnly = true)
+    public List<TransactionDTO> getUserTransactionsById(Long userId, TransactionDTOAssembler.AccountNumbers format) {
         UserModel user = userRepo.findById(userId)
                 .orElseThrow(() -> new RuntimeException("User not found"));
                 
         String formattedAccountNumber = user.getAccount().getAccountNumber();
         String accountNumber = accountNumberUtils.convertFormattedNumberToUuid(formattedAccountNumber);
-        String anonymizedAccount = anonymizationService.anonymize(accountNumber);
-
-        List<TransactionModel> transactions = transactionRepo.findByAccountNumbers(anonymizedAccount);
-
-        return transactions.stream().map(transaction -> {
-            String source = anonymizationService.deanonymize(transaction.getSourceAccountNumber());
-            String target = anonymizationService.deanonymize(transaction.getTargetAccountNumber());
-
-            TransactionDTO dto = new TransactionDTO();
-            dto.setId(transaction.getId());
-            dto.setType(transaction.getType());
-            dto.setStatus(transaction.getStatus());
-            dto.setAmount(transaction.getAmount());
-            dto.setTimestamp(transaction.getTimestamp());
-            dto.setDescription(encryptionService.decrypt(transaction.getEncryptedDescription()));
-            dto.setSourceAccountNumber(source);
-            dto.setTargetAccountNumber(target);
-
-            // Fetch real usernames using deanonymized account numbers
-            dto.setSourceAccountOwner(getUsernameByAccountNumber(source));
-            dto.setTargetAccountOwner(getUsernameByAccountNumber(target));
-
-            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-            UserModel currentUser = userRepo.findByUsername(authentication.getName())
-                    .orElseThrow(() -> new RuntimeException("User not found"));
-
-            boolean isOutgoing = transaction.getSourceAccountNumber() != null &&
-                    source.equals(currentUser.getAccount().getAccountNumber());
-
-            if ("TRANSFER".equals(transaction.getType())) {
-                dto.setAmount(isOutgoing ? transaction.getAmount().negate() : transaction.getAmount());
-            } else {
-                dto.setAmount(transaction.getAmount());
-            }
 
-            return dto;
-        }).collect(Collectors.toList());
-    }
-
-    private String getUsernameByAccountNumber(String accountNumber) {
-        return accountRepo.findByAccountNumber(accountNumber)
-                .map(account -> account.getUser().getUsername())
-                .orElse("Unknown");
+        List<TransactionModel> transactions = counterparties.find(accountNumber)
+                .map(counterparties::findAll)
+                .orElse(List.of());
+        return dtoAssembler.assemble(transactions, format);
     }
 
     public TransactionDTO processDeposit(String accountNumber, BigDecimal amount, String description, String username) {
@@ -178,94 +342,81 @@ public class TransactionService {
             throw new RuntimeException("Deposit amount must be positive");
         }
 
-        AccountModel account = accountRepo.findByAccountNumber(accountNumber)
-                .orElseThrow(() -> new RuntimeException("Account not found"));
-
-        if (!account.getUser().getUsername().equals(username)) {
-            throw new RuntimeException("Unauthorized deposit attempt");
-        }
-
-        account.setBalance(account.getBalance().add(amount));
-        accountRepo.save(account);
-
-        TransactionModel transaction = new TransactionModel();
-        transaction.setType("DEPOSIT");
-        transaction.setStatus("COMPLETED");
-        transaction.setAmount(amount);
-        transaction.setEncryptedDescription(encryptionService.encrypt(description));
-        transaction.setTimestamp(LocalDateTime.now());
-        transaction.setTargetAccountNumber(anonymizationService.anonymize(accountNumber));
-        transactionRepo.save(transaction);
-
-        return convertToDTO(transaction);
+        TransactionModel transaction = ledgerWriter.execute(List.of(accountNumber), txStatus -> {
+            Optional<AccountBalanceView> credited = hotAccountService.isHot(accountNumber)
+                    ? hotAccountService.creditOwned(accountNumber, username, amount)
+                    : accountRepo.creditOwnedAccount(accountNumber, username, amount);
+            if (credited.isEmpty()) {
+                accountRepo.findByAccountNumber(accountNumber)
+                        .orElseThrow(() -> new RuntimeException("Account not found"));
+                throw new RuntimeException("Unauthorized deposit attempt");
+            }
+            journalService.recordDeposit(credited.get().getId(), amount);
+
+            TransactionModel created = new TransactionModel();
+            created.setType("DEPOSIT");
+            created.setStatus("COMPLETED");
+            created.setAmount(amount);
+            created.setEncryptedDescription(encryptionService.encrypt(description));
+            created.setTimestamp(LocalDateTime.now());
+            counterparties.setTarget(created, counterparties.resolve(accountNumber));
+            return ledgerWriter.append(created);
+        });
+
+        return dtoAssembler.assemble(transaction);
     }
 
     public Map<String, Object> processWithdrawal(String accountNumber, BigDecimal amount, String description, String username) {
+        return processWithdrawal(accountNumber, amount, description, username, true);
+    }
+
+    /**
+     * Debits the account with one conditional UPDATE. Cash withdrawals count towards the
+     * account's daily withdrawal limit; internal debits such as loan repayments do not.
+     */
+    public Map<String, Object> processWithdrawal(String accountNumber, BigDecimal amount, String description,
+                                                 String username, boolean countTowardsDailyLimit) {
         if (amount.compareTo(BigDecimal.ZERO) <= 0) {
             throw new RuntimeException("Withdrawal amount must be positive");
         }
 
-        AccountModel account = accountRepo.findByAccountNumber(accountNumber)
-                .orElseThrow(() -> new RuntimeException("Account not found"));
-
-        if (account.getBalance().compareTo(amount) < 0) {
-            throw new RuntimeException("Insufficient funds for withdrawal");
-        }
+        Map<String, Object> response = new HashMap<>();
+        TransactionModel transaction = ledgerWriter.execute(List.of(accountNumber), txStatus -> {
+            Optional<AccountBalanceView> debited = debit(accountNumber, amount, countTowardsDailyLimit);
+            if (debited.isEmpty() && hotAccountService.sweep(accountNumber)) {
+                // Credits parked in balance slots were moved onto the account row
+                debited = debit(accountNumber, amount, countTowardsDailyLimit);
+            }
 
-        account.setBalance(account.getBalance().subtract(amount));
-        AccountModel updatedAccount = accountRepo.save(account);
+            if (debited.isEmpty()) {
+                AccountModel account = accountRepo.findByAccountNumber(accountNumber)
+                        .orElseThrow(() -> new RuntimeException("Account not found"));
+                if (account.getBalance().compareTo(amount) < 0) {
+                    throw new RuntimeException("Insufficient funds for withdrawal");
+                }
+                throw new TransactionLimitException("Daily withdrawal limit exceeded");
+            }
+            response.put("newBalance", debited.get().getBalance());
+            journalService.recordWithdrawal(debited.get().getId(), amount);
 
-        TransactionModel transaction = new TransactionModel();
-        transaction.setType("WITHDRAWAL");
-        transaction.setStatus("COMPLETED");
-        transaction.setAmount(amount);
-        transaction.setEncryptedDescription(encryptionService.encrypt(description));
-        transaction.setTimestamp(LocalDateTime.now());
-        transaction.setSourceAccountNumber(anonymizationService.anonymize(accountNumber));
-        transactionRepo.save(transaction);
+            TransactionModel created = new TransactionModel();
+            created.setType("WITHDRAWAL");
+            created.setStatus("COMPLETED");
+            created.setAmount(amount);
+            created.setEncryptedDescription(encryptionService.encrypt(description));
+            created.setTimestamp(LocalDateTime.now());
+            counterparties.setSource(created, counterparties.resolve(accountNumber));
+            return ledgerWriter.append(created);
+        });
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("transaction", convertToDTO(transaction));
-        response.put("newBalance", updatedAccount.getBalance());
+        response.put("transaction", dtoAssembler.assemble(transaction));
 
         return response;
     }
 
-    private TransactionDTO convertToDTO(TransactionModel transaction) {
-        TransactionDTO dto = new TransactionDTO();
-        dto.setId(transaction.getId());
-        dto.setType(transaction.getType());
-        dto.setStatus(transaction.getStatus());
-        dto.setAmount(transaction.getAmount());
-        dto.setTimestamp(transaction.getTimestamp());
-
-        String decryptedDescription = encryptionService.decrypt(transaction.getEncryptedDescription());
-        dto.setDescription(decryptedDescription);
-
-        String sourceAccount = transaction.getSourceAccountNumber() != null ?
-                accountNumberUtils.convertUuidToFormattedNumber(anonymizationService.deanonymize(transaction.getSourceAccountNumber())) : null;
-        String targetAccount = transaction.getTargetAccountNumber() != null ?
-                accountNumberUtils.convertUuidToFormattedNumber(anonymizationService.deanonymize(transaction.getTargetAccountNumber())) : null;
-
-        dto.setSourceAccountNumber(sourceAccount);
-        dto.setTargetAccountNumber(targetAccount);
-
-        dto.setSourceAccountOwner(getUsernameByAccountNumber(anonymizationService.deanonymize(transaction.getSourceAccountNumber())));
-        dto.setTargetAccountOwner(getUsernameByAccountNumber(anonymizationService.deanonymize(transaction.getTargetAccountNumber())));
-
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserModel currentUser = userRepo.findByUsername(authentication.getName())
-                .orElseThrow(() -> new RuntimeException("User not found"));
-
-        boolean isOutgoing = sourceAccount != null &&
-                sourceAccount.equals(currentUser.getAccount().getAccountNumber());
-
-        if ("TRANSFER".equals(transaction.getType())) {
-            dto.setAmount(isOutgoing ? transaction.getAmount().negate() : transaction.getAmount());
-        } else {
-            dto.setAmount(transaction.getAmount());
-        }
-
-        return dto;
+    private Optional<AccountBalanceView> debit(String accountNumber, BigDecimal amount, boolean countTowardsDailyLimit) {
+        return countTowardsDailyLimit
+                ? accountRepo.debitWithinDailyLimit(accountNumber, amount, LocalDate.now())
+                : accountRepo.debit(accountNumber, amount);
     }
 }
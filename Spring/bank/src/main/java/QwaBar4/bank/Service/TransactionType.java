@@ -1,5 +1,5 @@
 package QwaBar4.bank.Service;
 
 public enum TransactionType {
-    TRANSFER, DEPOSIT, WITHDRAWAL
+    TRANSFER, DEPOSIT, WITHDRAWAL, INTEREST
 }
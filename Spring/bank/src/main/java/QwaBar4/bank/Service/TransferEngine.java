@@ -0,0 +1,118 @@
+package QwaBar4.bank.Service;
+
+import QwaBar4.bank.Model.AccountModel;
+import QwaBar4.bank.Model.AccountModelRepository;
+import QwaBar4.bank.Utils.AccountNumberUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionCallback;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+@Service
+public class TransferEngine {
+
+    private final AccountModelRepository accountRepo;
+    private final ConcurrencyRetryExecutor retryExecutor;
+    private final LedgerWriter ledgerWriter;
+
+    private final long startedAt = System.nanoTime();
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder totalLatencyNanos = new LongAdder();
+    private final LongAccumulator maxLatencyNanos = new LongAccumulator(Long::max, 0);
+
+    @Autowired
+    public TransferEngine(AccountModelRepository accountRepo, ConcurrencyRetryExecutor retryExecutor,
+                          LedgerWriter ledgerWriter) {
+        this.accountRepo = accountRepo;
+        this.retryExecutor = retryExecutor;
+        this.ledgerWriter = ledgerWriter;
+    }
+
+    /**
+     * Runs a transfer touching the given accounts in its own transaction, retrying it on
+     * deadlocks, lock timeouts, serialization failures and lost optimistic version checks.
+     * With ledger group commit the transaction may be shared with other transfers.
+     */
+    public <T> T execute(Collection<String> accountNumbers, TransactionCallback<T> work) {
+        long start = System.nanoTime();
+        try {
+            T result = ledgerWriter.execute(accountNumbers, work);
+            committed.increment();
+            return result;
+        } catch (RuntimeException e) {
+            failed.increment();
+            throw e;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            totalLatencyNanos.add(elapsed);
+            maxLatencyNanos.accumulate(elapsed);
+        }
+    }
+
+    /**
+     * Loads every given account and returns them keyed by account number. In pessimistic
+     * mode the rows are locked for update in ascending id order; in optimistic mode they
+     * are read without locks and the version column rejects conflicting writes at commit.
+     * Unknown account numbers are absent from the map.
+     */
+    public Map<String, AccountModel> lockAccounts(Collection<String> accountNumbers) {
+        return lockAccounts(accountNumbers, Collections.emptySet());
+    }
+
+    /**
+     * Like lockAccounts, but the accounts in unlocked are only read, never locked. Callers
+     * use this for hot accounts they credit through balance slots without touching the row.
+     */
+    public Map<String, AccountModel> lockAccounts(Collection<String> accountNumbers, Set<String> unlocked) {
+        Collection<String> distinct = new LinkedHashSet<>(accountNumbers);
+        List<AccountModel> accounts;
+        if (retryExecutor.isOptimistic()) {
+            accounts = accountRepo.findAllByAccountNumberIn(distinct);
+        } else if (unlocked.isEmpty()) {
+            accounts = accountRepo.findAllForUpdateOrderById(distinct);
+        } else {
+            Collection<String> toLock = new LinkedHashSet<>(distinct);
+            toLock.removeAll(unlocked);
+            Collection<String> toRead = new LinkedHashSet<>(distinct);
+            toRead.retainAll(unlocked);
+
+            accounts = new ArrayList<>(accountRepo.findAllForUpdateOrderById(toLock));
+            if (!toRead.isEmpty()) {
+                accounts.addAll(accountRepo.findAllByAccountNumberIn(toRead));
+            }
+        }
+
+        Map<String, AccountModel> locked = new HashMap<>();
+        for (AccountModel account : accounts) {
+            locked.put(AccountNumberUtils.convertFormattedNumberToUuid(account.getAccountNumber()), account);
+        }
+        return locked;
+    }
+
+    public Map<String, Object> getMetrics() {
+        long done = committed.sum();
+        long total = done + failed.sum();
+        double uptimeSeconds = Math.max(1e-9, (System.nanoTime() - startedAt) / 1e9);
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("committed", done);
+        metrics.put("failed", failed.sum());
+        metrics.put("throughputPerSecond", done / uptimeSeconds);
+        metrics.put("avgLatencyMicros", total == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalLatencyNanos.sum() / total));
+        metrics.put("maxLatencyMicros", TimeUnit.NANOSECONDS.toMicros(maxLatencyNanos.get()));
+        return metrics;
+    }
+}
@@ -74,6 +74,7 @@ public class UserModelService implements UserDetailsService {
         return userRepo.existsByEmailIgnoreCase(email);
     }
 
+    @Transactional(readOnly = true)
     public List<UserDTO> getAllUsers() {
         return userRepo.findAll().stream()
             .map(this::convertToDTO)
@@ -87,6 +88,7 @@ public class UserModelService implements UserDetailsService {
         userRepo.save(user);
     }
 
+    @Transactional(readOnly = true)
     public UserDetailsDTO getUserDetails(Long userId) {
         UserModel user = userRepo.findById(userId)
             .orElseThrow(() -> new RuntimeException("User not found"));
@@ -96,7 +98,7 @@ public class UserModelService implements UserDetailsService {
             user.getUsername(),
             user.getEmail(),
             user.getAccount() != null ? user.getAccount().getAccountNumber() : null,
-            user.getAccount() != null ? user.getAccount().getBalance() : BigDecimal.ZERO,
+            user.getAccount() != null ? user.getAccount().getTotalBalance() : BigDecimal.ZERO,
             user.isActive(),
             user.getRoles(),
             user.getFirstName(),
@@ -152,7 +154,7 @@ public class UserModelService implements UserDetailsService {
             user.getUsername(),
             user.getEmail(),
             user.getAccount() != null ? user.getAccount().getAccountNumber() : null,
-            user.getAccount() != null ? user.getAccount().getBalance() : BigDecimal.ZERO,
+            user.getAccount() != null ? user.getAccount().getTotalBalance() : BigDecimal.ZERO,
             user.isActive(),
             user.getRoles(),
             user.getFirstName(),
@@ -177,7 +179,7 @@ public class UserModelService implements UserDetailsService {
             user.getUsername(),
             user.getEmail(),
             user.getAccount() != null ? user.getAccount().getAccountNumber() : null,
-            user.getAccount() != null ? user.getAccount().getBalance() : null,
+            user.getAccount() != null ? user.getAccount().getTotalBalance() : null,
             user.isActive()
         );
     }
@@ -198,10 +200,18 @@ public class UserModelService implements UserDetailsService {
             true,
             true,
             true,
-            user.getRoles().stream().map(SimpleGrantedAuthority::new).collect(Collectors.toList())
+            authorities(user.getRoles())
         );
     }
 
+    // Roles are stored bare ("USER", "ADMIN"); hasRole(...) checks expect the ROLE_ prefix
+    public static List<GrantedAuthority> authorities(Collection<String> roles) {
+        return roles.stream()
+            .map(role -> role.startsWith("ROLE_") ? role : "ROLE_" + role)
+            .map(SimpleGrantedAuthority::new)
+            .collect(Collectors.toList());
+    }
+
     @Transactional
     public void activateUser(Long userId) {
         UserModel user = userRepo.findById(userId)
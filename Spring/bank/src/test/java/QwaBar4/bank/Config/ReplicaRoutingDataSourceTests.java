@@ -0,0 +1,255 @@
+package QwaBar4.bank.Config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.containers.Network;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.containers.wait.strategy.Wait;
+import org.testcontainers.images.builder.Transferable;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Routes against a real primary and a standby streaming from it, so a query can tell
+ * where a connection was routed by asking whether the server is in recovery.
+ */
+@Testcontainers
+class ReplicaRoutingDataSourceTests {
+    private static final Duration READ_YOUR_WRITES = Duration.ofMillis(500);
+    private static final Network network = Network.newNetwork();
+
+    @Container
+    private static final PostgreSQLContainer<?> primary = new PostgreSQLContainer<>("postgres:16-alpine")
+            .withNetwork(network)
+            .withNetworkAliases("primary")
+            .withCopyToContainer(Transferable.of(
+                    "echo 'host replication all all trust' >> \"$PGDATA/pg_hba.conf\"\n", 0755),
+                    "/docker-entrypoint-initdb.d/replication.sh");
+
+    // Cloned from the primary with pg_basebackup, which also writes the standby settings
+    @Container
+    private static final GenericContainer<?> replica = new GenericContainer<>("postgres:16-alpine")
+            .dependsOn(primary)
+            .withNetwork(network)
+            .withExposedPorts(PostgreSQLContainer.POSTGRESQL_PORT)
+            .withCreateContainerCmdModifier(cmd -> cmd.withUser("postgres").withEntrypoint("sh", "-c",
+                    "until pg_basebackup -h primary -U test -D /tmp/standby -R -X stream; do " +
+                    "rm -rf /tmp/standby; sleep 1; done; exec postgres -D /tmp/standby"))
+            .waitingFor(Wait.forLogMessage(".*ready to accept read-only connections.*", 1));
+
+    private static HikariDataSource primaryPool;
+    private static HikariDataSource replicaPool;
+
+    @BeforeAll
+    static void setUp() throws InterruptedException {
+        primaryPool = pool(primary.getJdbcUrl(), false);
+        replicaPool = pool("jdbc:postgresql://" + replica.getHost() + ":" +
+                replica.getMappedPort(PostgreSQLContainer.POSTGRESQL_PORT) + "/" + primary.getDatabaseName(), true);
+
+        // The receiver connects shortly after the standby accepts connections
+        JdbcTemplate standby = new JdbcTemplate(replicaPool);
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (!Boolean.TRUE.equals(standby.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming')", Boolean.class))) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Standby is not streaming from the primary");
+            }
+            Thread.sleep(200);
+        }
+    }
+
+    @AfterAll
+    static void tearDown() {
+        primaryPool.close();
+        replicaPool.close();
+    }
+
+    @AfterEach
+    void clearUser() {
+        SecurityContextHolder.clearContext();
+    }
+
+    // The standby has the primary's users, so both take the same credentials
+    private static HikariDataSource pool(String jdbcUrl, boolean readOnly) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(jdbcUrl);
+        dataSource.setUsername(primary.getUsername());
+        dataSource.setPassword(primary.getPassword());
+        dataSource.setMaximumPoolSize(4);
+        dataSource.setAutoCommit(false);
+        dataSource.setReadOnly(readOnly);
+        return dataSource;
+    }
+
+    // Wired like ReplicaDataSourceConfig
+    private static final class Routing {
+        private final ReplicaLagMonitor lagMonitor;
+        private final ReplicaRoutingDataSource dataSource;
+        private final JdbcTemplate jdbcTemplate;
+        private final TransactionTemplate readWrite;
+        private final TransactionTemplate readOnly;
+
+        private Routing(long maxLagMillis) {
+            lagMonitor = new ReplicaLagMonitor(replicaPool, maxLagMillis);
+            dataSource = new ReplicaRoutingDataSource(lagMonitor, READ_YOUR_WRITES);
+            dataSource.setTargetDataSources(Map.<Object, Object>of(
+                    ReplicaRoutingDataSource.Target.PRIMARY, primaryPool,
+                    ReplicaRoutingDataSource.Target.REPLICA, replicaPool));
+            dataSource.setDefaultTargetDataSource(primaryPool);
+            dataSource.afterPropertiesSet();
+
+            // Defaults given up front, so the proxy fetches no connection of its own to probe them
+            LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy();
+            proxy.setTargetDataSource(dataSource);
+            proxy.setDefaultAutoCommit(false);
+            proxy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+            proxy.afterPropertiesSet();
+            DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(proxy);
+            jdbcTemplate = new JdbcTemplate(proxy);
+            readWrite = new TransactionTemplate(transactionManager);
+            readOnly = new TransactionTemplate(transactionManager);
+            readOnly.setReadOnly(true);
+        }
+
+        private String serverName() {
+            return jdbcTemplate.queryForObject(
+                    "SELECT CASE WHEN pg_is_in_recovery() THEN 'replica' ELSE 'primary' END", String.class);
+        }
+
+        private String read() {
+            return readOnly.execute(status -> serverName());
+        }
+
+        private String write() {
+            return readWrite.execute(status -> serverName());
+        }
+    }
+
+    private static void signIn(String username) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(username, null, List.of()));
+    }
+
+    // Reads on another thread, as another request of the same user would
+    private static String readAs(Routing routing, String username) throws Exception {
+        return CompletableFuture.supplyAsync(() -> {
+            signIn(username);
+            try {
+                return routing.read();
+            } finally {
+                SecurityContextHolder.clearContext();
+            }
+        }).get(30, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void readOnlyTransactionsGoToTheReplica() {
+        Routing routing = new Routing(1000);
+        routing.lagMonitor.check();
+
+        assertThat(routing.lagMonitor.isReplicaUsable()).isTrue();
+        assertThat(routing.lagMonitor.getMetrics()).containsEntry("replicaState", "streaming");
+        assertThat(routing.read()).isEqualTo("replica");
+        assertThat(routing.write()).isEqualTo("primary");
+        assertThat(routing.dataSource.getMetrics())
+                .containsEntry("replicaConnections", 1L)
+                .containsEntry("primaryConnections", 1L);
+    }
+
+    @Test
+    void readsStayOnThePrimaryUntilTheReplicaWasChecked() {
+        Routing routing = new Routing(1000);
+
+        assertThat(routing.read()).isEqualTo("primary");
+        assertThat(routing.dataSource.getMetrics()).containsEntry("lagFallbacks", 1L);
+    }
+
+    @Test
+    void readsFallBackToThePrimaryWhileTheReplicaLags() {
+        // Any lag, even none, exceeds a negative bound
+        Routing routing = new Routing(-1);
+        routing.lagMonitor.check();
+
+        assertThat(routing.lagMonitor.isReplicaUsable()).isFalse();
+        assertThat(routing.read()).isEqualTo("primary");
+        assertThat(routing.dataSource.getMetrics()).containsEntry("lagFallbacks", 1L);
+    }
+
+    @Test
+    void serverThatIsNotAStandbyIsNeverUsed() {
+        ReplicaLagMonitor lagMonitor = new ReplicaLagMonitor(primaryPool, 1000);
+        lagMonitor.check();
+
+        assertThat(lagMonitor.isReplicaUsable()).isFalse();
+        assertThat(lagMonitor.getMetrics()).containsEntry("replicaState", "not a standby");
+    }
+
+    @Test
+    void writerReadsFromThePrimaryForTheWindowAfterCommit() throws Exception {
+        Routing routing = new Routing(1000);
+        routing.lagMonitor.check();
+        signIn("alice");
+
+        assertThat(routing.read()).isEqualTo("replica");
+        assertThat(routing.write()).isEqualTo("primary");
+
+        assertThat(routing.read()).isEqualTo("primary");
+        assertThat(readAs(routing, "bob")).isEqualTo("replica");
+        assertThat(routing.dataSource.getMetrics()).containsEntry("readYourWritesFallbacks", 1L);
+
+        Thread.sleep(READ_YOUR_WRITES.toMillis() + 200);
+        assertThat(routing.read()).isEqualTo("replica");
+    }
+
+    @Test
+    void windowStartsOnlyWhenTheWriteCommits() throws Exception {
+        Routing routing = new Routing(1000);
+        routing.lagMonitor.check();
+        signIn("alice");
+
+        String duringWrite = routing.readWrite.execute(status -> {
+            routing.serverName();
+            try {
+                return readAs(routing, "alice");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        assertThat(duringWrite).isEqualTo("replica");
+        assertThat(routing.read()).isEqualTo("primary");
+    }
+
+    @Test
+    void rolledBackWriteDoesNotPinReadsToThePrimary() {
+        Routing routing = new Routing(1000);
+        routing.lagMonitor.check();
+        signIn("alice");
+
+        routing.readWrite.executeWithoutResult(status -> {
+            routing.serverName();
+            status.setRollbackOnly();
+        });
+
+        assertThat(routing.read()).isEqualTo("replica");
+    }
+}
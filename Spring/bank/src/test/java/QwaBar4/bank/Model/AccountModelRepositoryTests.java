@@ -0,0 +1,229 @@
+package QwaBar4.bank.Model;
+
+import QwaBar4.bank.PostgresTestConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Each statement commits on its own, like in the services, so concurrent debits really race
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(classes = PostgresTestConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AccountModelRepositoryTests {
+
+    private static final LocalDate TODAY = LocalDate.of(2024, 3, 14);
+
+    @Autowired
+    private AccountModelRepository accountRepo;
+
+    @Autowired
+    private UserModelRepository userRepo;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate tx() {
+        return new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void cleanUp() {
+        tx().executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM accounts");
+            jdbcTemplate.update("DELETE FROM user_roles");
+            jdbcTemplate.update("DELETE FROM users");
+        });
+    }
+
+    private String createAccount(String username, String balance, String dailyWithdrawalLimit) {
+        return tx().execute(status -> {
+            UserModel user = new UserModel();
+            user.setUsername(username);
+            user.setPassword("secret");
+            user.setActive(true);
+            user = userRepo.save(user);
+
+            AccountModel account = new AccountModel();
+            account.setAccountNumber(UUID.randomUUID().toString());
+            account.setBalance(new BigDecimal(balance));
+            account.setDailyWithdrawalLimit(dailyWithdrawalLimit != null ? new BigDecimal(dailyWithdrawalLimit) : null);
+            account.setUser(user);
+            accountRepo.save(account);
+            // The raw stored number, as the services pass it to the conditional updates
+            return jdbcTemplate.queryForObject("SELECT account_number FROM accounts WHERE id = ?",
+                    String.class, account.getId());
+        });
+    }
+
+    private Optional<AccountBalanceView> debit(String accountNumber, String amount, LocalDate today) {
+        return tx().execute(status -> accountRepo.debitWithinDailyLimit(accountNumber, new BigDecimal(amount), today));
+    }
+
+    private BigDecimal column(String accountNumber, String column) {
+        return jdbcTemplate.queryForObject("SELECT " + column + " FROM accounts WHERE account_number = ?",
+                BigDecimal.class, accountNumber);
+    }
+
+    @Test
+    void debitMovesBalanceAndDailyTotal() {
+        String account = createAccount("alice", "5000.00", "2000.00");
+
+        Optional<AccountBalanceView> result = debit(account, "1500.00", TODAY);
+
+        assertThat(result).isPresent();
+        assertThat(result.get().getBalance()).isEqualByComparingTo("3500.00");
+        assertThat(column(account, "daily_withdrawal_total")).isEqualByComparingTo("1500.00");
+    }
+
+    @Test
+    void debitOverDailyLimitIsRejectedAndChangesNothing() {
+        String account = createAccount("alice", "5000.00", "2000.00");
+        assertThat(debit(account, "1500.00", TODAY)).isPresent();
+
+        assertThat(debit(account, "600.00", TODAY)).isEmpty();
+
+        assertThat(column(account, "balance")).isEqualByComparingTo("3500.00");
+        assertThat(column(account, "daily_withdrawal_total")).isEqualByComparingTo("1500.00");
+        // Exactly up to the limit is still allowed
+        assertThat(debit(account, "500.00", TODAY)).isPresent();
+    }
+
+    @Test
+    void dailyTotalRollsOverAtMidnight() {
+        String account = createAccount("alice", "5000.00", "2000.00");
+        assertThat(debit(account, "1900.00", TODAY)).isPresent();
+        assertThat(debit(account, "1500.00", TODAY)).isEmpty();
+
+        assertThat(debit(account, "1500.00", TODAY.plusDays(1))).isPresent();
+
+        assertThat(column(account, "balance")).isEqualByComparingTo("1600.00");
+        assertThat(column(account, "daily_withdrawal_total")).isEqualByComparingTo("1500.00");
+        assertThat(jdbcTemplate.queryForObject("SELECT daily_totals_date FROM accounts WHERE account_number = ?",
+                LocalDate.class, account)).isEqualTo(TODAY.plusDays(1));
+    }
+
+    @Test
+    void debitWithoutLimitOnlyChecksBalance() {
+        String account = createAccount("alice", "5000.00", null);
+
+        assertThat(debit(account, "4000.00", TODAY)).isPresent();
+    }
+
+    @Test
+    void debitWithInsufficientFundsIsRejected() {
+        String account = createAccount("alice", "100.00", "2000.00");
+
+        assertThat(debit(account, "100.01", TODAY)).isEmpty();
+
+        assertThat(column(account, "balance")).isEqualByComparingTo("100.00");
+        assertThat(debit(account, "100.00", TODAY)).isPresent();
+        assertThat(column(account, "balance")).isEqualByComparingTo("0.00");
+    }
+
+    @Test
+    void debitOfUnknownAccountFindsNothing() {
+        assertThat(debit(UUID.randomUUID().toString(), "1.00", TODAY)).isEmpty();
+    }
+
+    @Test
+    void concurrentDebitsNeverOverdraw() throws Exception {
+        String account = createAccount("alice", "1000.00", "2000.00");
+        int threads = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return debit(account, "100.00", TODAY).isPresent();
+                }));
+            }
+            start.countDown();
+
+            int succeeded = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(30, TimeUnit.SECONDS)) {
+                    succeeded++;
+                }
+            }
+            assertThat(succeeded).isEqualTo(10);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat(column(account, "balance")).isEqualByComparingTo("0.00");
+        assertThat(column(account, "daily_withdrawal_total")).isEqualByComparingTo("1000.00");
+    }
+
+    @Test
+    void concurrentDebitsNeverExceedDailyLimit() throws Exception {
+        String account = createAccount("alice", "10000.00", "2000.00");
+        int threads = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return debit(account, "300.00", TODAY).isPresent();
+                }));
+            }
+            start.countDown();
+
+            int succeeded = 0;
+            for (Future<Boolean> result : results) {
+                if (result.get(30, TimeUnit.SECONDS)) {
+                    succeeded++;
+                }
+            }
+            assertThat(succeeded).isEqualTo(6);
+        } finally {
+            pool.shutdownNow();
+        }
+        assertThat(column(account, "balance")).isEqualByComparingTo("8200.00");
+        assertThat(column(account, "daily_withdrawal_total")).isEqualByComparingTo("1800.00");
+    }
+
+    @Test
+    void creditOnlyReachesTheOwnersAccount() {
+        String account = createAccount("alice", "100.00", "2000.00");
+        createAccount("bob", "0.00", "2000.00");
+
+        Optional<AccountBalanceView> wrongOwner = tx().execute(status ->
+                accountRepo.creditOwnedAccount(account, "bob", new BigDecimal("50.00")));
+        Optional<AccountBalanceView> owner = tx().execute(status ->
+                accountRepo.creditOwnedAccount(account, "alice", new BigDecimal("50.00")));
+
+        assertThat(wrongOwner).isEmpty();
+        assertThat(owner).isPresent();
+        assertThat(owner.get().getBalance()).isEqualByComparingTo("150.00");
+        assertThat(column(account, "balance")).isEqualByComparingTo("150.00");
+    }
+}
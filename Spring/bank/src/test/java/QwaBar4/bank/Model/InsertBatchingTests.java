@@ -0,0 +1,127 @@
+package QwaBar4.bank.Model;
+
+import QwaBar4.bank.PostgresTestConfig;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ContextConfiguration;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Counts the JDBC statements the bulk inserts cost, with JDBC batching as configured
+ * (after) and with a batch size of 1 (before), which is what the former IDENTITY ids
+ * forced: Hibernate had to run each insert on its own to read the generated id back.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ContextConfiguration(classes = PostgresTestConfig.class)
+class InsertBatchingTests {
+    private static final Logger logger = LoggerFactory.getLogger(InsertBatchingTests.class);
+    private static final int SCHEDULE_ROWS = 360;
+    private static final int LEDGER_ROWS = 360;
+    private static final int BATCH_SIZE = 50;
+    private static final int ID_BLOCK = 50;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private LoanModelRepository loanRepository;
+
+    @Autowired
+    private TransactionModelRepository transactionRepo;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    // Statements prepared, one per round trip, while saving a 360-month loan and flushing it
+    private long scheduleStatements(Integer jdbcBatchSize) {
+        entityManager.unwrap(Session.class).setJdbcBatchSize(jdbcBatchSize);
+        LoanModel loan = new LoanModel(new BigDecimal("250000.00"), 6.5, LocalDate.of(2024, 1, 1), SCHEDULE_ROWS);
+        loan.generatePaymentSchedule();
+        assertThat(loan.getPaymentSchedule()).hasSize(SCHEDULE_ROWS);
+
+        statistics.clear();
+        loanRepository.save(loan);
+        entityManager.flush();
+        long statements = statistics.getPrepareStatementCount();
+        entityManager.clear();
+        return statements;
+    }
+
+    private long ledgerStatements(Integer jdbcBatchSize) {
+        entityManager.unwrap(Session.class).setJdbcBatchSize(jdbcBatchSize);
+        List<TransactionModel> ledger = new ArrayList<>(LEDGER_ROWS);
+        for (int i = 0; i < LEDGER_ROWS; i++) {
+            TransactionModel row = new TransactionModel();
+            row.setType("INTEREST");
+            row.setAmount(new BigDecimal("1.25"));
+            row.setTimestamp(LocalDateTime.of(2024, 1, 31, 23, 59));
+            row.setTargetAccountNumber("account-" + i);
+            row.setStatus("COMPLETED");
+            ledger.add(row);
+        }
+
+        statistics.clear();
+        transactionRepo.batchInsert(ledger);
+        long statements = statistics.getPrepareStatementCount();
+        entityManager.clear();
+        return statements;
+    }
+
+    // One insert per batch plus one sequence call per block of ids
+    private static long batchedBound(int rows) {
+        return ceilDiv(rows, BATCH_SIZE) + ceilDiv(rows, ID_BLOCK) + 1;
+    }
+
+    private static long ceilDiv(int rows, int size) {
+        return (rows + size - 1) / size;
+    }
+
+    @Test
+    void paymentScheduleIsInsertedInBatches() {
+        long before = scheduleStatements(1);
+        long after = scheduleStatements(null);
+        logger.info("Payment schedule of {} rows: {} statements unbatched, {} batched", SCHEDULE_ROWS, before, after);
+
+        assertThat(before).isGreaterThanOrEqualTo(SCHEDULE_ROWS);
+        assertThat(after).isLessThanOrEqualTo(batchedBound(SCHEDULE_ROWS));
+    }
+
+    @Test
+    void ledgerBatchInsertIsInsertedInBatches() {
+        long before = ledgerStatements(1);
+        long after = ledgerStatements(null);
+        logger.info("Ledger batch of {} rows: {} statements unbatched, {} batched", LEDGER_ROWS, before, after);
+
+        assertThat(before).isGreaterThanOrEqualTo(LEDGER_ROWS);
+        assertThat(after).isLessThanOrEqualTo(batchedBound(LEDGER_ROWS));
+    }
+}
@@ -0,0 +1,46 @@
+package QwaBar4.bank;
+
+import QwaBar4.bank.Model.AccountModelRepository;
+import QwaBar4.bank.Service.AESEncryptionService;
+import QwaBar4.bank.Service.EncryptionConverter;
+import QwaBar4.bank.Service.LazyEncryptionConverter;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.testcontainers.service.connection.ServiceConnection;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+/**
+ * Entities and repositories against a throwaway Postgres container, for @DataJpaTest classes
+ * that name it in @ContextConfiguration. Tests using it need Docker.
+ *
+ * Deliberately not a @Configuration: BankApplication scans every QwaBar4.bank class,
+ * test classes included, and must not pick this up.
+ */
+@EntityScan(basePackageClasses = AccountModelRepository.class)
+@EnableJpaRepositories(basePackageClasses = AccountModelRepository.class)
+public class PostgresTestConfig {
+
+    public static final String ENCRYPTION_KEY = "0123456789abcdef0123456789abcdef";
+
+    @Bean
+    @ServiceConnection
+    public PostgreSQLContainer<?> postgresContainer() {
+        return new PostgreSQLContainer<>("postgres:16-alpine");
+    }
+
+    @Bean
+    public AESEncryptionService encryptionService() {
+        return new AESEncryptionService(ENCRYPTION_KEY);
+    }
+
+    @Bean
+    public EncryptionConverter encryptionConverter(AESEncryptionService encryptionService) {
+        return new EncryptionConverter(encryptionService);
+    }
+
+    @Bean
+    public LazyEncryptionConverter lazyEncryptionConverter(AESEncryptionService encryptionService) {
+        return new LazyEncryptionConverter(encryptionService);
+    }
+}
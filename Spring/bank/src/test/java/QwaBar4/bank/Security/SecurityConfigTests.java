@@ -0,0 +1,149 @@
+package QwaBar4.bank.Security;
+
+import QwaBar4.bank.Config.ReplicaRoutingDataSource;
+import QwaBar4.bank.Controller.AdminController;
+import QwaBar4.bank.Controller.LoanController;
+import QwaBar4.bank.Model.AccountModelRepository;
+import QwaBar4.bank.Model.AuditLogRepository;
+import QwaBar4.bank.Model.LoanModelRepository;
+import QwaBar4.bank.Model.TransactionModelRepository;
+import QwaBar4.bank.Model.UserModel;
+import QwaBar4.bank.Model.UserModelRepository;
+import QwaBar4.bank.Service.*;
+import QwaBar4.bank.Utils.AccountNumberUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.context.junit.jupiter.web.SpringJUnitWebConfig;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs the real filter chain, method security and UserModelService against users whose
+ * roles are stored the way the app stores them, without the ROLE_ prefix.
+ */
+@SpringJUnitWebConfig(classes = {SecurityConfig.class, LoanController.class, AdminController.class,
+        SecurityConfigTests.WebConfig.class})
+class SecurityConfigTests {
+
+    // Not a @Configuration, so BankApplication's component scan leaves it alone
+    @EnableWebMvc
+    static class WebConfig {
+        static final UserModelRepository userRepo = mock(UserModelRepository.class);
+
+        @Bean
+        public UserModelService userModelService() {
+            return new UserModelService(userRepo, mock(AccountModelRepository.class),
+                    mock(TransactionModelRepository.class), mock(AESEncryptionService.class),
+                    mock(LoanModelRepository.class));
+        }
+    }
+
+    @Autowired
+    private WebApplicationContext context;
+
+    @MockitoBean
+    private JwtUtil jwtUtil;
+
+    @MockitoBean
+    private LoanService loanService;
+    @MockitoBean
+    private TransactionService transactionService;
+    @MockitoBean
+    private AccountNumberUtils accountNumberUtils;
+    @MockitoBean
+    private AuditLogService auditLogService;
+    @MockitoBean
+    private AESEncryptionService encryptionService;
+    @MockitoBean
+    private AuditLogRepository auditLogRepository;
+    @MockitoBean
+    private TransactionModelRepository transactionRepo;
+    @MockitoBean
+    private AnonymizationService anonymizationService;
+    @MockitoBean
+    private StatementService statementService;
+    @MockitoBean
+    private UserModelRepository userRepository;
+    @MockitoBean
+    private TransferEngine transferEngine;
+    @MockitoBean
+    private ConcurrencyRetryExecutor retryExecutor;
+    @MockitoBean
+    private LedgerWriter ledgerWriter;
+    @MockitoBean
+    private JournalService journalService;
+    @MockitoBean
+    private HotAccountService hotAccountService;
+    @MockitoBean
+    private LedgerCounterparties counterparties;
+    @MockitoBean
+    private TransactionSearchService transactionSearchService;
+    @MockitoBean
+    private ReplicaRoutingDataSource replicaRouting;
+    @MockitoBean
+    private EncryptionKeyring encryptionKeyring;
+    @MockitoBean
+    private ReEncryptionService reEncryptionService;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(context).apply(springSecurity()).build();
+        signUp("alice", "USER");
+        signUp("root", "ADMIN");
+        when(loanService.getLoansForCurrentUser()).thenReturn(List.of());
+        when(ledgerWriter.getMetrics()).thenReturn(Map.of());
+    }
+
+    // A token named after the user, as JwtUtil would issue at login
+    private void signUp(String username, String role) {
+        UserModel user = new UserModel();
+        user.setUsername(username);
+        user.setPassword("secret");
+        user.setActive(true);
+        user.setRoles(Set.of(role));
+        when(WebConfig.userRepo.findByUsername(username)).thenReturn(Optional.of(user));
+        when(jwtUtil.getUsernameFromToken(username + "-token")).thenReturn(username);
+    }
+
+    private static String bearer(String username) {
+        return "Bearer " + username + "-token";
+    }
+
+    @Test
+    void userCanListOwnLoans() throws Exception {
+        mockMvc.perform(get("/api/loans/my-loans").header("Authorization", bearer("alice")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void adminCanReadAdminMetrics() throws Exception {
+        mockMvc.perform(get("/admin/metrics/ledger").header("Authorization", bearer("root")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void userCannotReachAdminEndpoints() throws Exception {
+        mockMvc.perform(get("/admin/metrics/ledger").header("Authorization", bearer("alice")))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/api/loans/admin").header("Authorization", bearer("alice")))
+                .andExpect(status().isForbidden());
+    }
+}
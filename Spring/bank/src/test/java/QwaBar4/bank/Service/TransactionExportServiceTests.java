@@ -0,0 +1,40 @@
+package QwaBar4.bank.Service;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static QwaBar4.bank.Service.TransactionExportService.csv;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TransactionExportServiceTests {
+
+    @Test
+    void plainValuesAreWrittenAsTheyAre() {
+        assertThat(csv("rent for March")).isEqualTo("rent for March");
+        assertThat(csv(null)).isEmpty();
+        assertThat(csv("")).isEmpty();
+    }
+
+    @Test
+    void separatorsQuotesAndLineBreaksAreQuoted() {
+        assertThat(csv("a,b")).isEqualTo("\"a,b\"");
+        assertThat(csv("say \"hi\"")).isEqualTo("\"say \"\"hi\"\"\"");
+        assertThat(csv("two\nlines")).isEqualTo("\"two\nlines\"");
+    }
+
+    @Test
+    void formulaPrefixesAreNeutralised() {
+        assertThat(csv("=HYPERLINK(\"http://evil\")")).isEqualTo("\"'=HYPERLINK(\"\"http://evil\"\")\"");
+        assertThat(csv("+1+1")).isEqualTo("'+1+1");
+        assertThat(csv("-2+3")).isEqualTo("'-2+3");
+        assertThat(csv("@SUM(A1)")).isEqualTo("'@SUM(A1)");
+        assertThat(csv("\t=1")).isEqualTo("'\t=1");
+        assertThat(csv("\r=1")).isEqualTo("\"'\r=1\"");
+    }
+
+    @Test
+    void negativeAmountsStayNumbers() {
+        assertThat(csv(new BigDecimal("-50.00"))).isEqualTo("-50.00");
+    }
+}